@@ -0,0 +1,125 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.capability.jmh;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.minecraftforge.common.util.NonNullConsumer;
+import net.minecraftforge.common.util.NonNullFunction;
+import net.minecraftforge.common.util.NonNullSupplier;
+
+/**
+ * The {@link net.minecraftforge.common.util.LazyOptional} this module started out with, kept as the point of
+ * comparison for {@link LazyOptionalBenchmark}. Only the members the benchmark uses are kept.
+ */
+public class BaselineLazyOptional<T> {
+	private static final BaselineLazyOptional<Void> EMPTY = new BaselineLazyOptional<>(null);
+
+	private final NonNullSupplier<T> supplier;
+	private AtomicReference<T> resolved;
+	private Set<NonNullConsumer<BaselineLazyOptional<T>>> listeners = new HashSet<>();
+	private boolean isValid = true;
+
+	private BaselineLazyOptional(NonNullSupplier<T> instanceSupplier) {
+		this.supplier = instanceSupplier;
+	}
+
+	public static <T> BaselineLazyOptional<T> of(NonNullSupplier<T> instanceSupplier) {
+		return instanceSupplier == null ? empty() : new BaselineLazyOptional<>(instanceSupplier);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <T> BaselineLazyOptional<T> empty() {
+		return (BaselineLazyOptional<T>) EMPTY;
+	}
+
+	private T getValue() {
+		if (!isValid) {
+			return null;
+		}
+
+		if (resolved != null) {
+			return resolved.get();
+		}
+
+		if (supplier != null) {
+			resolved = new AtomicReference<>(null);
+			T temp = supplier.get();
+
+			if (temp == null) {
+				return null;
+			}
+
+			resolved.set(temp);
+			return resolved.get();
+		}
+
+		return null;
+	}
+
+	private T getValueUnsafe() {
+		T ret = getValue();
+
+		if (ret == null) {
+			throw new IllegalStateException("LazyOptional is empty or otherwise returned null from getValue() unexpectedly");
+		}
+
+		return ret;
+	}
+
+	public boolean isPresent() {
+		return supplier != null && isValid;
+	}
+
+	public void ifPresent(NonNullConsumer<? super T> consumer) {
+		Objects.requireNonNull(consumer);
+		T val = getValue();
+
+		if (isValid && val != null) {
+			consumer.accept(val);
+		}
+	}
+
+	public <U> BaselineLazyOptional<U> map(NonNullFunction<? super T, ? extends U> mapper) {
+		Objects.requireNonNull(mapper);
+		return isPresent() ? of(() -> mapper.apply(getValueUnsafe())) : empty();
+	}
+
+	public T orElse(T other) {
+		T val = getValue();
+		return val != null ? val : other;
+	}
+
+	public void addListener(NonNullConsumer<BaselineLazyOptional<T>> listener) {
+		if (isPresent()) {
+			this.listeners.add(listener);
+		} else {
+			listener.accept(this);
+		}
+	}
+
+	public void invalidate() {
+		this.isValid = false;
+		this.listeners.forEach(e -> e.accept(this));
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.capability.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.common.util.NonNullConsumer;
+import net.minecraftforge.common.util.NonNullFunction;
+import net.minecraftforge.common.util.NonNullSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link LazyOptional} with {@link BaselineLazyOptional} on the operations capability queries perform the
+ * most. Run with {@code -prof gc} to compare allocation rates as well.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class LazyOptionalBenchmark {
+	private final Object value = new Object();
+	private final NonNullSupplier<Object> supplier = () -> value;
+	private final NonNullFunction<Object, String> mapper = Object::toString;
+	private final NonNullConsumer<Object> consumer = object -> { };
+
+	private LazyOptional<Object> resolved;
+	private BaselineLazyOptional<Object> baselineResolved;
+
+	@Setup
+	public void setup() {
+		resolved = LazyOptional.of(supplier);
+		resolved.orElse(null);
+		baselineResolved = BaselineLazyOptional.of(supplier);
+		baselineResolved.orElse(null);
+	}
+
+	@Benchmark
+	public Object resolve() {
+		return LazyOptional.of(supplier).orElse(null);
+	}
+
+	@Benchmark
+	public Object resolveBaseline() {
+		return BaselineLazyOptional.of(supplier).orElse(null);
+	}
+
+	@Benchmark
+	public void ifPresent() {
+		resolved.ifPresent(consumer);
+	}
+
+	@Benchmark
+	public void ifPresentBaseline() {
+		baselineResolved.ifPresent(consumer);
+	}
+
+	@Benchmark
+	public Object map() {
+		return resolved.map(mapper).orElse(null);
+	}
+
+	@Benchmark
+	public Object mapBaseline() {
+		return baselineResolved.map(mapper).orElse(null);
+	}
+
+	@Benchmark
+	public void invalidate(Blackhole blackhole) {
+		LazyOptional<Object> optional = LazyOptional.of(supplier);
+		optional.addListener(blackhole::consume);
+		optional.invalidate();
+	}
+
+	@Benchmark
+	public void invalidateBaseline(Blackhole blackhole) {
+		BaselineLazyOptional<Object> optional = BaselineLazyOptional.of(supplier);
+		optional.addListener(blackhole::consume);
+		optional.invalidate();
+	}
+}
@@ -145,6 +145,16 @@ public class Capability<T> {
 		}
 	}
 
+	/**
+	 * Patchwork extension: a dense, zero-based index assigned by {@link CapabilityManager} in registration order.
+	 * Useful for keying lookup tables by capability without hashing.
+	 *
+	 * @return The index of this capability.
+	 */
+	public int getId() {
+		return id;
+	}
+
 	public @Nonnull <R> LazyOptional<R> orEmpty(Capability<R> toCheck, LazyOptional<T> inst) {
 		return this == toCheck ? inst.cast() : LazyOptional.empty();
 	}
@@ -153,10 +163,12 @@ public class Capability<T> {
 	private final String name;
 	private final IStorage<T> storage;
 	private final Callable<? extends T> factory;
+	private final int id;
 
-	Capability(String name, IStorage<T> storage, Callable<? extends T> factory) {
+	Capability(String name, IStorage<T> storage, Callable<? extends T> factory, int id) {
 		this.name = name;
 		this.storage = storage;
 		this.factory = factory;
+		this.id = id;
 	}
 }
@@ -19,14 +19,24 @@
 
 package net.minecraftforge.common.capabilities;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import net.minecraftforge.common.util.INBTSerializable;
 import net.minecraftforge.common.util.LazyOptional;
 import org.apache.logging.log4j.LogManager;
@@ -36,6 +46,11 @@ import net.minecraft.nbt.Tag;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.Direction;
 
+import net.patchworkmc.api.capability.ComparableCapabilityState;
+import net.patchworkmc.api.capability.DeclaredCapabilityProvider;
+import net.patchworkmc.api.capability.DirtyTrackingSerializable;
+import net.patchworkmc.api.capability.SnapshotSerializable;
+
 /**
  * A high-speed implementation of a {@link Capability} delegator.
  * This is used to wrap the results of the {@link net.minecraftforge.event.AttachCapabilitiesEvent}.
@@ -46,12 +61,33 @@ import net.minecraft.util.math.Direction;
  *
  * <p>Internally the handlers are baked into arrays for fast iteration.
  * The {@link Identifier} will be used for the NBT Key when serializing.
+ *
+ * <p>Providers implementing {@link DeclaredCapabilityProvider} are additionally baked into a table indexed by
+ * {@link Capability#getId()} and side, so they are only queried for the capabilities they declare.
+ * Other providers are queried for everything, in attachment order. The table only depends on the classes of the
+ * providers and their declarations, so it is baked once and shared by every dispatcher with the same ones, such as
+ * the copies of an item stack.
+ *
+ * <p>Serializable providers implementing {@link DirtyTrackingSerializable} only get serialized again once they are
+ * dirty; otherwise a copy of the tag they last wrote is reused. The cached tag itself never leaves the dispatcher.
+ *
+ * <p>{@link #areCompatible(CapabilityDispatcher)} compares providers one by one, using
+ * {@link ComparableCapabilityState} where available, and only falls back to comparing NBT for the rest.
  */
 @ParametersAreNonnullByDefault
 public final class CapabilityDispatcher implements INBTSerializable<CompoundTag>, ICapabilityProvider {
+	static final int SIDES = Direction.values().length + 1;
+
+	private static final Map<Signature, Layout> LAYOUTS = new ConcurrentHashMap<>();
+
 	private final ICapabilityProvider[] providers;
+	private final Layout layout;
 	private final INBTSerializable<Tag>[] writers;
 	private final String[] names;
+	private final Tag[] lastWritten;
+	private final AtomicReferenceArray<Object> snapshotted;
+	private final Tag[] hashedTags;
+	private final int[] tagHashes;
 	private final List<Runnable> listeners;
 
 	public CapabilityDispatcher(Map<Identifier, ICapabilityProvider> capabilities, List<Runnable> listeners) {
@@ -88,12 +124,48 @@ public final class CapabilityDispatcher implements INBTSerializable<CompoundTag>
 		this.providers = providers.toArray(new ICapabilityProvider[0]);
 		this.writers = writers.toArray(new INBTSerializable[0]);
 		this.names = names.toArray(new String[0]);
+		this.lastWritten = new Tag[this.writers.length];
+		this.snapshotted = new AtomicReferenceArray<>(this.writers.length);
+		this.hashedTags = new Tag[this.writers.length];
+		this.tagHashes = new int[this.writers.length];
+		this.layout = layoutOf(this.providers);
+	}
+
+	private static Layout layoutOf(ICapabilityProvider[] providers) {
+		Signature signature = new Signature(providers);
+		Layout layout = LAYOUTS.get(signature);
+
+		if (layout == null) {
+			layout = new Layout(signature);
+			Layout previous = LAYOUTS.putIfAbsent(signature, layout);
+
+			if (previous != null) {
+				layout = previous;
+			}
+		}
+
+		return layout;
+	}
+
+	/**
+	 * @return The slot for a capability and side in tables laid out like {@link #lookup}
+	 */
+	static int indexOf(Capability<?> cap, @Nullable Direction side) {
+		return cap.getId() * SIDES + (side == null ? 0 : side.ordinal() + 1);
 	}
 
 	@Nonnull
 	@Override
 	public <T> LazyOptional<T> getCapability(Capability<T> cap, @Nullable Direction side) {
-		for (ICapabilityProvider provider : providers) {
+		int[] candidates = layout.undeclared;
+		int index = indexOf(cap, side);
+
+		if (index < layout.lookup.length && layout.lookup[index] != null) {
+			candidates = layout.lookup[index];
+		}
+
+		for (int candidate : candidates) {
+			ICapabilityProvider provider = providers[candidate];
 			LazyOptional<T> ret = provider.getCapability(cap, side);
 
 			//noinspection ConstantConditions
@@ -120,8 +192,9 @@ public final class CapabilityDispatcher implements INBTSerializable<CompoundTag>
 
 		for (int x = 0; x < writers.length; x++) {
 			try {
-				tag.put(names[x], writers[x].serializeNBT());
+				tag.put(names[x], write(x));
 			} catch (Exception exception) {
+				forget(x);
 				LogManager.getLogger().error("A capability provider with the name " + names[x] + " has thrown an exception trying to write state. It will not persist. Report this to the mod author", exception);
 			}
 		}
@@ -129,11 +202,148 @@ public final class CapabilityDispatcher implements INBTSerializable<CompoundTag>
 		return tag;
 	}
 
+	/**
+	 * @return A tag owned by the caller, which may be put into another compound and mutated freely
+	 */
+	private Tag write(int index) {
+		if (!(writers[index] instanceof DirtyTrackingSerializable)) {
+			return writers[index].serializeNBT();
+		}
+
+		// The cached tag must never escape, otherwise whoever receives it could change what we write next time
+		return writeCached(index).copy();
+	}
+
+	/**
+	 * @return The tag last written by the provider, which must not be mutated or handed out
+	 */
+	private Tag writeCached(int index) {
+		INBTSerializable<Tag> writer = writers[index];
+
+		if (!(writer instanceof DirtyTrackingSerializable)) {
+			return writer.serializeNBT();
+		}
+
+		DirtyTrackingSerializable tracked = (DirtyTrackingSerializable) writer;
+		Tag written = cached(index);
+
+		if (written == null || tracked.isDirty()) {
+			forget(index);
+			tracked.clearDirty();
+			written = writer.serializeNBT();
+			lastWritten[index] = written;
+		}
+
+		return written;
+	}
+
+	/**
+	 * @return The tag last written for a provider, including one finished by a snapshot since, or null if there is none
+	 */
+	@Nullable
+	private Tag cached(int index) {
+		if (lastWritten[index] == null) {
+			Object snapshot = snapshotted.get(index);
+
+			if (snapshot instanceof Tag && snapshotted.compareAndSet(index, snapshot, null)) {
+				lastWritten[index] = (Tag) snapshot;
+			}
+		}
+
+		return lastWritten[index];
+	}
+
+	/**
+	 * Drops the tag cached for a provider, along with any snapshot still being built for it.
+	 */
+	private void forget(int index) {
+		lastWritten[index] = null;
+		snapshotted.set(index, null);
+	}
+
+	/**
+	 * @return true if any serializable provider implements {@link SnapshotSerializable}
+	 */
+	public boolean canSnapshot() {
+		for (INBTSerializable<Tag> writer : writers) {
+			if (writer instanceof SnapshotSerializable) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Serializes providers that can't be snapshotted right away, and captures snapshots of those that can.
+	 *
+	 * @return A supplier, safe to run on any thread, producing the same tag {@link #serializeNBT()} would have.
+	 */
+	public Supplier<CompoundTag> snapshotNBT() {
+		CompoundTag tag = new CompoundTag();
+		List<String> pendingNames = Lists.newArrayList();
+		List<Supplier<? extends Tag>> pending = Lists.newArrayList();
+		List<Object> pendingTokens = Lists.newArrayList();
+		IntList pendingIndices = new IntArrayList();
+
+		for (int x = 0; x < writers.length; x++) {
+			INBTSerializable<Tag> writer = writers[x];
+
+			try {
+				if (writer instanceof SnapshotSerializable && !isCleanAndCached(x)) {
+					forget(x);
+					Object token = null;
+
+					if (writer instanceof DirtyTrackingSerializable) {
+						((DirtyTrackingSerializable) writer).clearDirty();
+
+						// The tag is built elsewhere; it's only cached once done, unless the provider changed meanwhile
+						token = new Object();
+						snapshotted.set(x, token);
+					}
+
+					pending.add(((SnapshotSerializable<?>) writer).snapshot());
+					pendingNames.add(names[x]);
+					pendingTokens.add(token);
+					pendingIndices.add(x);
+				} else {
+					tag.put(names[x], write(x));
+				}
+			} catch (Exception exception) {
+				forget(x);
+				LogManager.getLogger().error("A capability provider with the name " + names[x] + " has thrown an exception trying to write state. It will not persist. Report this to the mod author", exception);
+			}
+		}
+
+		return () -> {
+			for (int x = 0; x < pending.size(); x++) {
+				try {
+					Tag written = pending.get(x).get();
+					Object token = pendingTokens.get(x);
+					tag.put(pendingNames.get(x), written);
+
+					if (token != null) {
+						snapshotted.compareAndSet(pendingIndices.getInt(x), token, written.copy());
+					}
+				} catch (Exception exception) {
+					LogManager.getLogger().error("A capability provider with the name " + pendingNames.get(x) + " has thrown an exception trying to write state. It will not persist. Report this to the mod author", exception);
+				}
+			}
+
+			return tag;
+		};
+	}
+
+	private boolean isCleanAndCached(int index) {
+		return writers[index] instanceof DirtyTrackingSerializable && cached(index) != null && !((DirtyTrackingSerializable) writers[index]).isDirty();
+	}
+
 	@Override
 	public void deserializeNBT(CompoundTag tag) {
 		for (int x = 0; x < writers.length; x++) {
 			if (tag.contains(names[x])) {
 				try {
+					forget(x);
 					writers[x].deserializeNBT(tag.get(names[x]));
 				} catch (Exception exception) {
 					LogManager.getLogger().error("A capability provider with the name " + names[x] + " has thrown an exception trying to read state. It will not persist. Report this to the mod author", exception);
@@ -154,10 +364,218 @@ public final class CapabilityDispatcher implements INBTSerializable<CompoundTag>
 			return other.writers.length == 0;
 		}
 
-		return this.serializeNBT().equals(other.serializeNBT());
+		if (other == this) {
+			return true;
+		}
+
+		if (!Arrays.equals(this.names, other.names)) {
+			return this.serializeNBT().equals(other.serializeNBT());
+		}
+
+		try {
+			for (int x = 0; x < writers.length; x++) {
+				if (!isWriterCompatible(other, x)) {
+					return false;
+				}
+			}
+
+			return true;
+		} catch (Exception exception) {
+			// Let serializeNBT report the failing provider and skip it, as before
+			return this.serializeNBT().equals(other.serializeNBT());
+		}
+	}
+
+	private boolean isWriterCompatible(CapabilityDispatcher other, int index) {
+		INBTSerializable<Tag> mine = this.writers[index];
+		INBTSerializable<Tag> theirs = other.writers[index];
+
+		if (mine == theirs) {
+			return true;
+		}
+
+		if (mine instanceof ComparableCapabilityState && mine.getClass() == theirs.getClass()) {
+			ComparableCapabilityState left = (ComparableCapabilityState) mine;
+			ComparableCapabilityState right = (ComparableCapabilityState) theirs;
+			return left.stateHashCode() == right.stateHashCode() && left.stateEquals(right);
+		}
+
+		Tag left = this.writeCached(index);
+		Tag right = other.writeCached(index);
+
+		if (left == right) {
+			return true;
+		}
+
+		// Hashing only pays off for tags that are reused between saves, so the hash is reused too
+		if (mine instanceof DirtyTrackingSerializable && theirs instanceof DirtyTrackingSerializable) {
+			if (this.hashTag(index, left) != other.hashTag(index, right)) {
+				return false;
+			}
+		}
+
+		return left.equals(right);
+	}
+
+	private int hashTag(int index, Tag tag) {
+		if (hashedTags[index] != tag) {
+			tagHashes[index] = tag.hashCode();
+			hashedTags[index] = tag;
+		}
+
+		return tagHashes[index];
 	}
 
 	public void invalidate() {
 		this.listeners.forEach(Runnable::run);
 	}
+
+	/**
+	 * What the lookup table of a dispatcher is built from: the class of every provider in attachment order and, for
+	 * declared providers, the sides each declared capability is exposed on.
+	 */
+	private static final class Signature {
+		private final Class<?>[] classes;
+		// Per provider, -1 if undeclared, otherwise the number of declared capabilities followed by the id and side
+		// mask of each, sorted by id
+		private final int[] declarations;
+		private final int hash;
+
+		private Signature(ICapabilityProvider[] providers) {
+			IntList declarations = new IntArrayList();
+			List<Capability<?>> caps = Lists.newArrayList();
+			this.classes = new Class<?>[providers.length];
+
+			for (int i = 0; i < providers.length; i++) {
+				ICapabilityProvider provider = providers[i];
+				this.classes[i] = provider.getClass();
+
+				if (!(provider instanceof DeclaredCapabilityProvider)) {
+					declarations.add(-1);
+					continue;
+				}
+
+				DeclaredCapabilityProvider declared = (DeclaredCapabilityProvider) provider;
+				Set<Capability<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+				caps.clear();
+
+				for (Capability<?> cap : declared.getDeclaredCapabilities()) {
+					// An @CapabilityInject field stays null while its capability isn't registered
+					if (cap != null && seen.add(cap)) {
+						caps.add(cap);
+					}
+				}
+
+				caps.sort(Comparator.comparingInt(Capability::getId));
+				declarations.add(caps.size());
+
+				for (Capability<?> cap : caps) {
+					int sides = 0;
+
+					for (int sideIndex = 0; sideIndex < SIDES; sideIndex++) {
+						if (declared.exposes(cap, sideIndex == 0 ? null : Direction.values()[sideIndex - 1])) {
+							sides |= 1 << sideIndex;
+						}
+					}
+
+					declarations.add(cap.getId());
+					declarations.add(sides);
+				}
+			}
+
+			this.declarations = declarations.toIntArray();
+			this.hash = 31 * Arrays.hashCode(classes) + Arrays.hashCode(this.declarations);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+
+			if (!(obj instanceof Signature)) {
+				return false;
+			}
+
+			Signature other = (Signature) obj;
+			return hash == other.hash && Arrays.equals(classes, other.classes) && Arrays.equals(declarations, other.declarations);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	/**
+	 * The per-capability, per-side provider table, holding indices into the providers of a dispatcher. Each slot holds,
+	 * in attachment order, the undeclared providers plus the declared providers exposing that capability on that side.
+	 * Slots for capabilities nobody declared stay null and fall back to {@link #undeclared}.
+	 */
+	private static final class Layout {
+		private final int[] undeclared;
+		private final int[][] lookup;
+
+		private Layout(Signature signature) {
+			int providers = signature.classes.length;
+			// The declared capability ids and side masks of each provider, null for undeclared ones
+			int[][] ids = new int[providers][];
+			int[][] sides = new int[providers][];
+			IntList undeclared = new IntArrayList();
+			int size = 0;
+			int offset = 0;
+
+			for (int i = 0; i < providers; i++) {
+				int count = signature.declarations[offset++];
+
+				if (count < 0) {
+					undeclared.add(i);
+					continue;
+				}
+
+				ids[i] = new int[count];
+				sides[i] = new int[count];
+
+				for (int j = 0; j < count; j++) {
+					ids[i][j] = signature.declarations[offset++];
+					sides[i][j] = signature.declarations[offset++];
+					size = Math.max(size, ids[i][j] + 1);
+				}
+			}
+
+			this.undeclared = undeclared.toIntArray();
+			this.lookup = new int[size * SIDES][];
+			IntList matching = new IntArrayList();
+
+			for (int i = 0; i < providers; i++) {
+				if (ids[i] == null) {
+					continue;
+				}
+
+				for (int id : ids[i]) {
+					// Already filled in for an earlier provider declaring the same capability
+					if (lookup[id * SIDES] != null) {
+						continue;
+					}
+
+					for (int sideIndex = 0; sideIndex < SIDES; sideIndex++) {
+						matching.clear();
+
+						for (int provider = 0; provider < providers; provider++) {
+							if (ids[provider] == null || exposes(ids[provider], sides[provider], id, sideIndex)) {
+								matching.add(provider);
+							}
+						}
+
+						lookup[id * SIDES + sideIndex] = matching.toIntArray();
+					}
+				}
+			}
+		}
+
+		private static boolean exposes(int[] ids, int[] sides, int id, int sideIndex) {
+			int index = Arrays.binarySearch(ids, id);
+			return index >= 0 && (sides[index] & 1 << sideIndex) != 0;
+		}
+	}
 }
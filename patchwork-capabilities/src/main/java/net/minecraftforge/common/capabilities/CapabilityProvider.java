@@ -19,6 +19,9 @@
 
 package net.minecraftforge.common.capabilities;
 
+import java.util.Arrays;
+import java.util.function.Supplier;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -36,8 +39,36 @@ public abstract class CapabilityProvider<B> implements ICapabilityProvider {
 	protected CapabilityDispatcher capabilities;
 	private boolean valid = true;
 
+	private final boolean isLazy;
+	private boolean attachPending;
+	private ICapabilityProvider lazyParent;
+	private CompoundTag lazyData;
+
+	private final boolean cacheQueries;
+	private LazyOptional<?>[] queryCache;
+	private CapabilityDispatcher queryCacheOwner;
+
 	protected CapabilityProvider(Class<B> baseClass) {
+		this(baseClass, false);
+	}
+
+	protected CapabilityProvider(Class<B> baseClass, boolean isLazy) {
+		this(baseClass, isLazy, false);
+	}
+
+	/**
+	 * @param isLazy If true, {@link #gatherCapabilities(ICapabilityProvider)} only records the parent, and the
+	 *               {@link AttachCapabilitiesEvent} is fired the first time the capabilities are actually needed.
+	 *               NBT passed to {@link #deserializeCaps(CompoundTag)} before then is held as-is and applied right
+	 *               after attaching.
+	 * @param cacheQueries If true, the result of {@link #getCapability(Capability, Direction)} is remembered per
+	 *                     capability and side. A cached result is dropped once its {@link LazyOptional} is invalidated,
+	 *                     when {@link #invalidateCaps()} is called, or on {@link #markCapabilitiesChanged()}.
+	 */
+	protected CapabilityProvider(Class<B> baseClass, boolean isLazy, boolean cacheQueries) {
 		this.baseClass = baseClass;
+		this.isLazy = isLazy;
+		this.cacheQueries = cacheQueries;
 	}
 
 	public final void gatherCapabilities() {
@@ -45,6 +76,16 @@ public abstract class CapabilityProvider<B> implements ICapabilityProvider {
 	}
 
 	public void gatherCapabilities(@Nullable ICapabilityProvider parent) {
+		if (isLazy && capabilities == null) {
+			attachPending = true;
+			lazyParent = parent;
+			return;
+		}
+
+		doGatherCapabilities(parent);
+	}
+
+	protected void doGatherCapabilities(@Nullable ICapabilityProvider parent) {
 		AttachCapabilitiesEvent<B> event = new AttachCapabilitiesEvent<>(baseClass, (B) this);
 		MinecraftForge.EVENT_BUS.post(event);
 
@@ -56,6 +97,19 @@ public abstract class CapabilityProvider<B> implements ICapabilityProvider {
 	}
 
 	public final @Nullable CapabilityDispatcher getCapabilities() {
+		if (attachPending) {
+			attachPending = false;
+			ICapabilityProvider parent = lazyParent;
+			CompoundTag data = lazyData;
+			lazyParent = null;
+			lazyData = null;
+			doGatherCapabilities(parent);
+
+			if (data != null && capabilities != null) {
+				capabilities.deserializeNBT(data);
+			}
+		}
+
 		return this.capabilities;
 	}
 
@@ -87,7 +141,28 @@ public abstract class CapabilityProvider<B> implements ICapabilityProvider {
 		return null;
 	}
 
+	/**
+	 * Patchwork extension: captures the state of the capabilities for serialization on another thread.
+	 *
+	 * @return A supplier producing the same tag as {@link #serializeCaps()}, or null if there are no capabilities
+	 * @see net.patchworkmc.api.capability.SnapshotSerializable
+	 */
+	public final @Nullable Supplier<CompoundTag> snapshotCaps() {
+		final CapabilityDispatcher disp = getCapabilities();
+
+		if (disp != null) {
+			return disp.snapshotNBT();
+		}
+
+		return null;
+	}
+
 	public final void deserializeCaps(CompoundTag tag) {
+		if (attachPending) {
+			lazyData = tag;
+			return;
+		}
+
 		final CapabilityDispatcher disp = getCapabilities();
 
 		if (disp != null) {
@@ -97,6 +172,7 @@ public abstract class CapabilityProvider<B> implements ICapabilityProvider {
 
 	public void invalidateCaps() {
 		this.valid = false;
+		markCapabilitiesChanged();
 		final CapabilityDispatcher disp = getCapabilities();
 
 		if (disp != null) {
@@ -108,10 +184,54 @@ public abstract class CapabilityProvider<B> implements ICapabilityProvider {
 		this.valid = true; // Players don't copy the entity when transporting across worlds.
 	}
 
+	/**
+	 * Patchwork extension: drops any cached capability queries. Call this when the capabilities exposed by this
+	 * object change without their {@link LazyOptional}s being invalidated, for example when a block changes which
+	 * sides it connects on.
+	 */
+	public void markCapabilitiesChanged() {
+		this.queryCache = null;
+		this.queryCacheOwner = null;
+	}
+
 	@Override
 	@Nonnull
 	public <T> LazyOptional<T> getCapability(@Nonnull Capability<T> cap, @Nullable Direction side) {
 		final CapabilityDispatcher disp = getCapabilities();
-		return !valid || disp == null ? LazyOptional.empty() : disp.getCapability(cap, side);
+
+		if (!valid || disp == null) {
+			return LazyOptional.empty();
+		}
+
+		if (!cacheQueries) {
+			return disp.getCapability(cap, side);
+		}
+
+		return getCachedCapability(disp, cap, side);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> LazyOptional<T> getCachedCapability(CapabilityDispatcher disp, Capability<T> cap, @Nullable Direction side) {
+		LazyOptional<?>[] cache = this.queryCache;
+		int index = CapabilityDispatcher.indexOf(cap, side);
+
+		if (cache == null || queryCacheOwner != disp) {
+			cache = new LazyOptional<?>[index + CapabilityDispatcher.SIDES];
+			queryCacheOwner = disp;
+		} else if (index < cache.length) {
+			LazyOptional<?> cached = cache[index];
+
+			// An invalidated optional is no longer present, the empty one never is
+			if (cached != null && (cached.isPresent() || cached == LazyOptional.empty())) {
+				return (LazyOptional<T>) cached;
+			}
+		} else {
+			cache = Arrays.copyOf(cache, index + CapabilityDispatcher.SIDES);
+		}
+
+		LazyOptional<T> result = disp.getCapability(cap, side);
+		cache[index] = result;
+		this.queryCache = cache;
+		return result;
 	}
 }
@@ -23,7 +23,6 @@ import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -53,11 +52,20 @@ import org.apache.logging.log4j.Logger;
 @ParametersAreNonnullByDefault
 public class LazyOptional<T> {
 	private final NonNullSupplier<T> supplier;
-	private AtomicReference<T> resolved;
-	private Set<NonNullConsumer<LazyOptional<T>>> listeners = new HashSet<>();
-	private boolean isValid = true;
+	// Null until resolved; holds NULL_RESULT if the supplier broke its contract
+	private volatile Object resolved;
+	// Only touched while holding the lock, guards against the supplier querying its own optional
+	private boolean resolving;
+	// Allocated on the first addListener, most optionals never get one
+	private Set<NonNullConsumer<LazyOptional<T>>> listeners;
+	private volatile boolean isValid = true;
 
 	private static final @Nonnull LazyOptional<Void> EMPTY = new LazyOptional<>(null);
+	private static final Object NULL_RESULT = new Object();
+	// Stands in for the supplier of mapped optionals, which compute their value themselves
+	private static final NonNullSupplier<?> MAPPED = () -> {
+		throw new IllegalStateException("Mapped LazyOptional resolved through its supplier");
+	};
 	private static final Logger LOGGER = LogManager.getLogger();
 
 	/**
@@ -95,29 +103,51 @@ public class LazyOptional<T> {
 		this.supplier = instanceSupplier;
 	}
 
+	@SuppressWarnings("unchecked")
 	private @Nullable T getValue() {
-		if (!isValid) {
+		if (!isValid || supplier == null) {
 			return null;
 		}
 
-		if (resolved != null) {
-			return resolved.get();
-		}
+		Object value = resolved;
 
-		if (supplier != null) {
-			resolved = new AtomicReference<>(null);
-			T temp = supplier.get();
+		if (value == null) {
+			synchronized (this) {
+				value = resolved;
 
-			if (temp == null) {
-				LOGGER.catching(Level.WARN, new NullPointerException("Supplier should not return null value"));
-				return null;
-			}
+				if (resolving) {
+					return null;
+				}
+
+				// The supplier is only ever invoked once, even when resolved from several threads at a time
+				if (value == null) {
+					resolving = true;
+					T temp;
+
+					try {
+						temp = compute();
+					} finally {
+						resolving = false;
+					}
+
+					if (temp == null) {
+						LOGGER.catching(Level.WARN, new NullPointerException("Supplier should not return null value"));
+					}
 
-			resolved.set(temp);
-			return resolved.get();
+					value = temp == null ? NULL_RESULT : temp;
+					resolved = value;
+				}
+			}
 		}
 
-		return null;
+		return value == NULL_RESULT ? null : (T) value;
+	}
+
+	/**
+	 * @return The value of this optional, called at most once
+	 */
+	T compute() {
+		return supplier.get();
 	}
 
 	private T getValueUnsafe() {
@@ -174,7 +204,8 @@ public class LazyOptional<T> {
 	 */
 	public <U> LazyOptional<U> map(NonNullFunction<? super T, ? extends U> mapper) {
 		Objects.requireNonNull(mapper);
-		return isPresent() ? of(() -> mapper.apply(getValueUnsafe())) : empty();
+		// One object per call instead of a lambda-backed supplier and the optional wrapping it
+		return isPresent() ? new Mapped<>(this, mapper) : empty();
 	}
 
 	/**
@@ -258,11 +289,21 @@ public class LazyOptional<T> {
 	 * <p>If this {@link LazyOptional} is empty, the listener will be called immediately.
 	 */
 	public void addListener(NonNullConsumer<LazyOptional<T>> listener) {
-		if (isPresent()) {
-			this.listeners.add(listener);
-		} else {
-			listener.accept(this);
+		if (supplier != null) {
+			synchronized (this) {
+				// Checked under the lock, so the listener is either seen by invalidate() or called right here
+				if (isValid) {
+					if (this.listeners == null) {
+						this.listeners = new HashSet<>();
+					}
+
+					this.listeners.add(listener);
+					return;
+				}
+			}
 		}
+
+		listener.accept(this);
 	}
 
 	/**
@@ -279,7 +320,36 @@ public class LazyOptional<T> {
 	 * capability objects instead of re-checking them every tick.
 	 */
 	public void invalidate() {
-		this.isValid = false;
-		this.listeners.forEach(e -> e.accept(this));
+		Set<NonNullConsumer<LazyOptional<T>>> listeners;
+
+		synchronized (this) {
+			this.isValid = false;
+
+			if (this.listeners == null) {
+				return;
+			}
+
+			// Listeners run outside the lock, they commonly query other optionals
+			listeners = new HashSet<>(this.listeners);
+		}
+
+		listeners.forEach(e -> e.accept(this));
+	}
+
+	private static final class Mapped<T, U> extends LazyOptional<U> {
+		private final LazyOptional<T> source;
+		private final NonNullFunction<? super T, ? extends U> mapper;
+
+		@SuppressWarnings("unchecked")
+		private Mapped(LazyOptional<T> source, NonNullFunction<? super T, ? extends U> mapper) {
+			super((NonNullSupplier<U>) MAPPED);
+			this.source = source;
+			this.mapper = mapper;
+		}
+
+		@Override
+		U compute() {
+			return mapper.apply(source.getValueUnsafe());
+		}
 	}
 }
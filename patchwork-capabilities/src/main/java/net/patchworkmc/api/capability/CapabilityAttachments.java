@@ -0,0 +1,74 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.capability;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.impl.capability.AttachPlans;
+
+/**
+ * A declarative alternative to listening for {@link net.minecraftforge.event.AttachCapabilitiesEvent}.
+ *
+ * <p>Attachments registered here are selected purely by the class of the object being constructed. The matching
+ * factories are computed once per concrete class and cached, so attaching is a walk over an array rather than a post
+ * through the event bus. When no mod listens for the event at all, it is not posted.
+ *
+ * <p>Declared attachments are added before the event is posted, so event listeners see them in
+ * {@link net.minecraftforge.event.AttachCapabilitiesEvent#getCapabilities()}. Keys share the event's namespace and
+ * must stay unique per object.
+ */
+public final class CapabilityAttachments {
+	private CapabilityAttachments() {
+		// NO-OP
+	}
+
+	/**
+	 * Attaches a capability provider to every object that is an instance of {@code type}: entities, block entities,
+	 * chunks, worlds or item stacks.
+	 *
+	 * @param type    The class (or superclass) of the objects to attach to
+	 * @param key     The key to attach the provider under, also used as the NBT key when serializing
+	 * @param factory Creates the provider for a given object
+	 */
+	public static <T> void register(Class<T> type, Identifier key, Factory<? super T> factory) {
+		AttachPlans.register(type, key, factory);
+	}
+
+	@FunctionalInterface
+	public interface Factory<T> {
+		/**
+		 * @param object The object being constructed. Its construction is still incomplete.
+		 * @return The provider to attach, or null to attach nothing to this particular object.
+		 */
+		@Nullable
+		ICapabilityProvider create(T object);
+
+		/**
+		 * Called when the object the provider was attached to is invalidated, such as an entity or block entity being
+		 * removed from the world. Implementations should invalidate every capability instance held by the provider.
+		 */
+		default void invalidate(ICapabilityProvider provider) {
+		}
+	}
+}
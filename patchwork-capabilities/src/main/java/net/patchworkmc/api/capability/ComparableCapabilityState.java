@@ -0,0 +1,40 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.capability;
+
+/**
+ * Implemented by serializable capability providers that can compare their state directly, without writing NBT.
+ *
+ * <p>Used when checking whether two item stacks can stack or merge. The result must agree with comparing the output of
+ * {@code serializeNBT} on both providers. Providers that are compared often should cache their hash and reset it
+ * whenever their state changes.
+ */
+public interface ComparableCapabilityState {
+	/**
+	 * @return A hash of the serializable state. Equal states must return equal hashes.
+	 */
+	int stateHashCode();
+
+	/**
+	 * @param other Another provider of the exact same class
+	 * @return true if both providers would serialize to equal NBT
+	 */
+	boolean stateEquals(ComparableCapabilityState other);
+}
@@ -0,0 +1,59 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.capability;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityDispatcher;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+
+import net.minecraft.util.math.Direction;
+
+/**
+ * An {@link ICapabilityProvider} that declares up front which capabilities it can expose.
+ *
+ * <p>When attached through {@link net.minecraftforge.event.AttachCapabilitiesEvent}, the {@link CapabilityDispatcher}
+ * uses the declaration to build a lookup table, so queries for capabilities this provider does not declare never reach
+ * its {@link #getCapability(Capability, Direction)}. Providers that do not implement this interface are still queried
+ * for every capability.
+ *
+ * <p>The declaration is read once, when the dispatcher is created, and must not change afterwards.
+ */
+public interface DeclaredCapabilityProvider extends ICapabilityProvider {
+	/**
+	 * @return Every capability this provider may return a present {@link net.minecraftforge.common.util.LazyOptional} for.
+	 */
+	Collection<Capability<?>> getDeclaredCapabilities();
+
+	/**
+	 * Narrows the declaration down to individual sides. Only consulted for capabilities returned by
+	 * {@link #getDeclaredCapabilities()}.
+	 *
+	 * @param capability The declared capability
+	 * @param side       The side being queried, null for 'internal' or 'self'
+	 * @return false if this provider never exposes the capability on the given side
+	 */
+	default boolean exposes(Capability<?> capability, @Nullable Direction side) {
+		return true;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.capability;
+
+/**
+ * Implemented by {@link net.minecraftforge.common.util.INBTSerializable} capability providers that can tell when their
+ * state has changed.
+ *
+ * <p>The {@link net.minecraftforge.common.capabilities.CapabilityDispatcher} remembers the last tag each such provider
+ * wrote, and reuses it on the next save if the provider is not dirty, instead of serializing again. The reused tag is
+ * shared, so providers must not keep and mutate the tags they return from {@code serializeNBT}.
+ */
+public interface DirtyTrackingSerializable {
+	/**
+	 * @return true if the state has changed since {@link #clearDirty()} was last called
+	 */
+	boolean isDirty();
+
+	/**
+	 * Called right before the provider is serialized. Changes made during or after serialization must mark the
+	 * provider dirty again.
+	 */
+	void clearDirty();
+}
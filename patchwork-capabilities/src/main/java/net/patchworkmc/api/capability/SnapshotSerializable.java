@@ -0,0 +1,41 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.capability;
+
+import java.util.function.Supplier;
+
+import net.minecraft.nbt.Tag;
+
+/**
+ * Implemented by {@link net.minecraftforge.common.util.INBTSerializable} capability providers that can split saving
+ * into a cheap capture of their state and a separate, thread-safe conversion of that capture to NBT.
+ *
+ * <p>When off-thread serialization is enabled, chunk and entity saves call {@link #snapshot()} on the saving thread
+ * and run the returned supplier on a worker thread while the rest of the object is being saved.
+ */
+public interface SnapshotSerializable<T extends Tag> {
+	/**
+	 * Captures the current state. Called on the thread that is saving the object.
+	 *
+	 * @return A supplier building the NBT for the captured state. It runs on another thread, so it must only read the
+	 * captured, immutable state and never the live provider.
+	 */
+	Supplier<T> snapshot();
+}
@@ -0,0 +1,118 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.capability;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.api.capability.CapabilityAttachments;
+
+/**
+ * Caches, per concrete class, the {@link CapabilityAttachments} registrations that apply to it.
+ */
+public final class AttachPlans {
+	private static final List<Attachment> ATTACHMENTS = new ArrayList<>();
+	private static final Map<Class<?>, Attachment[]> PLANS = new ConcurrentHashMap<>();
+	private static final Attachment[] EMPTY = new Attachment[0];
+
+	private AttachPlans() {
+		// NO-OP
+	}
+
+	public static <T> void register(Class<T> type, Identifier key, CapabilityAttachments.Factory<? super T> factory) {
+		Objects.requireNonNull(type, "Attempted to register a capability attachment with no type");
+		Objects.requireNonNull(key, "Attempted to register a capability attachment with no key");
+		Objects.requireNonNull(factory, "Attempted to register a capability attachment with no factory");
+
+		synchronized (ATTACHMENTS) {
+			ATTACHMENTS.add(new Attachment(type, key, factory));
+			PLANS.clear();
+		}
+	}
+
+	/**
+	 * @return true if there are no declared attachments for objects of the given class
+	 */
+	public static boolean isEmpty(Class<?> clazz) {
+		return getPlan(clazz).length == 0;
+	}
+
+	/**
+	 * Runs every declared attachment matching the class of {@code object}, adding the providers and their
+	 * invalidation listeners to the event.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> void attach(T object, AttachCapabilitiesEvent<?> event) {
+		for (Attachment attachment : getPlan(object.getClass())) {
+			CapabilityAttachments.Factory<Object> factory = (CapabilityAttachments.Factory<Object>) attachment.factory;
+			ICapabilityProvider provider = factory.create(object);
+
+			if (provider != null) {
+				event.addCapability(attachment.key, provider);
+				event.addListener(() -> factory.invalidate(provider));
+			}
+		}
+	}
+
+	private static Attachment[] getPlan(Class<?> clazz) {
+		Attachment[] plan = PLANS.get(clazz);
+
+		if (plan != null) {
+			return plan;
+		}
+
+		synchronized (ATTACHMENTS) {
+			// Computed under the lock so a concurrent registration can't leave a stale plan in the cache.
+			return PLANS.computeIfAbsent(clazz, AttachPlans::compute);
+		}
+	}
+
+	private static Attachment[] compute(Class<?> clazz) {
+		List<Attachment> matching = new ArrayList<>();
+
+		for (Attachment attachment : ATTACHMENTS) {
+			if (attachment.type.isAssignableFrom(clazz)) {
+				matching.add(attachment);
+			}
+		}
+
+		return matching.isEmpty() ? EMPTY : matching.toArray(EMPTY);
+	}
+
+	private static final class Attachment {
+		private final Class<?> type;
+		private final Identifier key;
+		private final CapabilityAttachments.Factory<?> factory;
+
+		private Attachment(Class<?> type, Identifier key, CapabilityAttachments.Factory<?> factory) {
+			this.type = type;
+			this.key = key;
+			this.factory = factory;
+		}
+	}
+}
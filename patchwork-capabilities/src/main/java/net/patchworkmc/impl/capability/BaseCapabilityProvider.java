@@ -27,18 +27,50 @@ import net.minecraftforge.common.capabilities.CapabilityProvider;
 import net.minecraftforge.common.capabilities.ICapabilityProvider;
 import net.minecraftforge.event.AttachCapabilitiesEvent;
 
+import net.patchworkmc.impl.fml.event.ListenerPresence;
+
 public class BaseCapabilityProvider<T> extends CapabilityProvider<T> {
+	/**
+	 * Defers {@link AttachCapabilitiesEvent} for item stacks until their capabilities are first used.
+	 * Most stacks are short-lived copies that never have their capabilities queried.
+	 */
+	public static final boolean LAZY_ITEM_STACKS = Boolean.getBoolean("patchwork.capabilities.lazyItemStacks");
+
+	/**
+	 * Remembers capability queries on block entities, which pipes and cables query on every tick.
+	 */
+	public static final boolean CACHE_BLOCK_ENTITY_QUERIES = Boolean.getBoolean("patchwork.capabilities.cacheBlockEntityQueries");
+
+	private static final ListenerPresence ATTACH_LISTENERS = ListenerPresence.of(MinecraftForge.EVENT_BUS, AttachCapabilitiesEvent.class);
+
 	private final T provider;
 
 	public BaseCapabilityProvider(Class<T> baseClass, T provider) {
-		super(baseClass);
+		this(baseClass, provider, false);
+	}
+
+	public BaseCapabilityProvider(Class<T> baseClass, T provider, boolean isLazy) {
+		this(baseClass, provider, isLazy, false);
+	}
+
+	public BaseCapabilityProvider(Class<T> baseClass, T provider, boolean isLazy, boolean cacheQueries) {
+		super(baseClass, isLazy, cacheQueries);
 		this.provider = provider;
 	}
 
 	@Override
-	public void gatherCapabilities(@Nullable ICapabilityProvider parent) {
+	protected void doGatherCapabilities(@Nullable ICapabilityProvider parent) {
+		if (!ATTACH_LISTENERS.hasListeners() && parent == null && AttachPlans.isEmpty(provider.getClass())) {
+			capabilities = null;
+			return;
+		}
+
 		AttachCapabilitiesEvent<T> event = new AttachCapabilitiesEvent<>(baseClass, provider);
-		MinecraftForge.EVENT_BUS.post(event);
+		AttachPlans.attach(provider, event);
+
+		if (ATTACH_LISTENERS.hasListeners()) {
+			MinecraftForge.EVENT_BUS.post(event);
+		}
 
 		if (!event.getCapabilities().isEmpty() || parent != null) {
 			capabilities = new CapabilityDispatcher(event.getCapabilities(), event.getListeners(), parent);
@@ -19,6 +19,8 @@
 
 package net.patchworkmc.impl.capability;
 
+import java.util.function.Supplier;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -63,6 +65,11 @@ public interface CapabilityProviderHolder extends ICapabilityProvider {
 		return getCapabilityProvider().serializeCaps();
 	}
 
+	@Nullable
+	default Supplier<CompoundTag> snapshotCaps() {
+		return getCapabilityProvider().snapshotCaps();
+	}
+
 	default void deserializeCaps(CompoundTag tag) {
 		getCapabilityProvider().deserializeCaps(tag);
 	}
@@ -75,6 +82,10 @@ public interface CapabilityProviderHolder extends ICapabilityProvider {
 		getCapabilityProvider().reviveCaps();
 	}
 
+	default void markCapabilitiesChanged() {
+		getCapabilityProvider().markCapabilitiesChanged();
+	}
+
 	@Nonnull
 	default <T> LazyOptional<T> getCapability(@Nonnull Capability<T> cap, @Nullable Direction side) {
 		return getCapabilityProvider().getCapability(cap, side);
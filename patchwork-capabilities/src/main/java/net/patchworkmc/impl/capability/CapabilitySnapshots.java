@@ -0,0 +1,149 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.capability;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.minecraftforge.common.capabilities.CapabilityDispatcher;
+
+import net.minecraft.nbt.CompoundTag;
+
+/**
+ * Moves capability NBT building off the saving thread for providers implementing
+ * {@link net.patchworkmc.api.capability.SnapshotSerializable}.
+ *
+ * <p>Saving is split in two: {@link #begin} captures snapshots on the saving thread and hands the NBT building to a
+ * dedicated serializer thread, then {@link #finish} collects it once the rest of the object has been written. The
+ * vanilla save work in between runs concurrently with the capability serialization. If the serializer thread hasn't
+ * picked the work up by then, the saving thread does it itself instead of waiting in line.
+ */
+public final class CapabilitySnapshots {
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.capabilities.offThreadSerialization");
+
+	private static final ThreadLocal<Pending> PENDING_CHUNK = new ThreadLocal<>();
+	private static final Executor EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+			.setNameFormat("Patchwork Capability Serializer")
+			.setDaemon(true)
+			.build());
+
+	private CapabilitySnapshots() {
+		// NO-OP
+	}
+
+	/**
+	 * @return The capability tag being built, or null if the holder has no capabilities
+	 */
+	@Nullable
+	public static Pending begin(CapabilityProviderHolder holder) {
+		CapabilityDispatcher dispatcher = holder.getCapabilities();
+
+		if (dispatcher == null) {
+			return null;
+		}
+
+		// Nothing to gain from a task switch when every provider has to be written here anyway
+		if (!dispatcher.canSnapshot()) {
+			CompoundTag tag = holder.serializeCaps();
+			return () -> tag;
+		}
+
+		Supplier<CompoundTag> snapshot = holder.snapshotCaps();
+
+		if (snapshot == null) {
+			return null;
+		}
+
+		Task task = new Task(snapshot);
+		EXECUTOR.execute(task);
+		return task;
+	}
+
+	/**
+	 * Collects the capability tag and stores it as {@code ForgeCaps} in the target.
+	 */
+	public static void finish(@Nullable Pending pending, CompoundTag target) {
+		if (pending == null) {
+			return;
+		}
+
+		CompoundTag tag = pending.join();
+
+		if (tag != null) {
+			target.put("ForgeCaps", tag);
+		}
+	}
+
+	public static void beginChunk(CapabilityProviderHolder chunk) {
+		PENDING_CHUNK.set(begin(chunk));
+	}
+
+	public static void finishChunk(CompoundTag level) {
+		Pending pending = PENDING_CHUNK.get();
+		PENDING_CHUNK.remove();
+		finish(pending, level);
+	}
+
+	/**
+	 * A capability tag handed to {@link #begin}, not necessarily built yet.
+	 */
+	@FunctionalInterface
+	public interface Pending {
+		/**
+		 * Returns the tag, building it on the calling thread if nobody started on it yet.
+		 */
+		CompoundTag join();
+	}
+
+	private static final class Task implements Pending, Runnable {
+		private final Supplier<CompoundTag> snapshot;
+		private final AtomicBoolean claimed = new AtomicBoolean();
+		private final CompletableFuture<CompoundTag> result = new CompletableFuture<>();
+
+		private Task(Supplier<CompoundTag> snapshot) {
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public void run() {
+			if (!claimed.compareAndSet(false, true)) {
+				return;
+			}
+
+			try {
+				result.complete(snapshot.get());
+			} catch (Throwable throwable) {
+				result.completeExceptionally(throwable);
+			}
+		}
+
+		@Override
+		public CompoundTag join() {
+			run();
+			return result.join();
+		}
+	}
+}
@@ -36,7 +36,7 @@ import net.patchworkmc.impl.capability.CapabilityProviderHolder;
 
 @Mixin(BlockEntity.class)
 public class BlockEntityMixin implements CapabilityProviderHolder {
-	private final CapabilityProvider<BlockEntity> provider = new BaseCapabilityProvider<>(BlockEntity.class, (BlockEntity) (Object) this);
+	private final CapabilityProvider<BlockEntity> provider = new BaseCapabilityProvider<>(BlockEntity.class, (BlockEntity) (Object) this, false, BaseCapabilityProvider.CACHE_BLOCK_ENTITY_QUERIES);
 
 	@Nonnull
 	@Override
@@ -49,6 +49,7 @@ import net.minecraft.world.chunk.WorldChunk;
 import net.minecraft.world.poi.PointOfInterestStorage;
 
 import net.patchworkmc.impl.capability.CapabilityProviderHolder;
+import net.patchworkmc.impl.capability.CapabilitySnapshots;
 
 @Mixin(ChunkSerializer.class)
 public class ChunkSerializerMixin {
@@ -68,10 +69,28 @@ public class ChunkSerializerMixin {
 
 	@Inject(method = "serialize", slice = @Slice(from = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;saveToTag(Lnet/minecraft/nbt/CompoundTag;)Z"), to = @At(value = "INVOKE", target = "Lnet/minecraft/world/chunk/ProtoChunk;getEntities()Ljava/util/List;")), at = @At(value = "JUMP", opcode = Opcodes.GOTO, ordinal = 2), locals = LocalCapture.CAPTURE_FAILHARD)
 	private static void serializeCapabilities(ServerWorld serverWorld, Chunk chunk, CallbackInfoReturnable<CompoundTag> callbackInfoReturnable, ChunkPos chunkPos, CompoundTag compoundTag, CompoundTag level) {
+		if (CapabilitySnapshots.ENABLED) {
+			return;
+		}
+
 		CompoundTag tag = ((CapabilityProviderHolder) chunk).serializeCaps();
 
 		if (tag != null) {
 			level.put("ForgeCaps", tag);
 		}
 	}
+
+	@Inject(method = "serialize", at = @At("HEAD"))
+	private static void beginCapabilitySnapshot(ServerWorld serverWorld, Chunk chunk, CallbackInfoReturnable<CompoundTag> callbackInfoReturnable) {
+		if (CapabilitySnapshots.ENABLED && chunk instanceof CapabilityProviderHolder) {
+			CapabilitySnapshots.beginChunk((CapabilityProviderHolder) chunk);
+		}
+	}
+
+	@Inject(method = "serialize", at = @At("RETURN"))
+	private static void finishCapabilitySnapshot(ServerWorld serverWorld, Chunk chunk, CallbackInfoReturnable<CompoundTag> callbackInfoReturnable) {
+		if (CapabilitySnapshots.ENABLED && chunk instanceof CapabilityProviderHolder) {
+			CapabilitySnapshots.finishChunk(callbackInfoReturnable.getReturnValue().getCompound("Level"));
+		}
+	}
 }
@@ -26,6 +26,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
@@ -34,10 +35,13 @@ import net.minecraft.nbt.CompoundTag;
 
 import net.patchworkmc.impl.capability.BaseCapabilityProvider;
 import net.patchworkmc.impl.capability.CapabilityProviderHolder;
+import net.patchworkmc.impl.capability.CapabilitySnapshots;
 
 @Mixin(Entity.class)
 public class EntityMixin implements CapabilityProviderHolder {
 	private final CapabilityProvider<Entity> provider = new BaseCapabilityProvider<>(Entity.class, (Entity) (Object) this);
+	private boolean snapshotCapabilities;
+	private CapabilitySnapshots.Pending pendingCapabilities;
 
 	@Shadow
 	public boolean removed;
@@ -55,6 +59,12 @@ public class EntityMixin implements CapabilityProviderHolder {
 
 	@Inject(method = "toTag", at = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;writeCustomDataToTag(Lnet/minecraft/nbt/CompoundTag;)V"))
 	private void serializeCapabilities(CompoundTag tag, CallbackInfoReturnable<CompoundTag> callbackInfoReturnable) {
+		if (snapshotCapabilities) {
+			// Built while the entity writes its own data, collected in saveWithCapabilitySnapshot
+			pendingCapabilities = CapabilitySnapshots.begin(this);
+			return;
+		}
+
 		CompoundTag capabilities = serializeCaps();
 
 		if (capabilities != null) {
@@ -62,6 +72,25 @@ public class EntityMixin implements CapabilityProviderHolder {
 		}
 	}
 
+	// Only whole entity saves are worth a snapshot, other toTag callers just copy the entity around
+	@Redirect(method = "saveToTag", at = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;toTag(Lnet/minecraft/nbt/CompoundTag;)Lnet/minecraft/nbt/CompoundTag;"))
+	private CompoundTag saveWithCapabilitySnapshot(Entity entity, CompoundTag tag) {
+		if (!CapabilitySnapshots.ENABLED) {
+			return entity.toTag(tag);
+		}
+
+		snapshotCapabilities = true;
+
+		try {
+			CompoundTag result = entity.toTag(tag);
+			CapabilitySnapshots.finish(pendingCapabilities, tag);
+			return result;
+		} finally {
+			snapshotCapabilities = false;
+			pendingCapabilities = null;
+		}
+	}
+
 	@Inject(method = "fromTag", at = @At(value = "INVOKE", target = "Lnet/minecraft/entity/Entity;readCustomDataFromTag(Lnet/minecraft/nbt/CompoundTag;)V"))
 	private void deserializeCapabilities(CompoundTag tag, CallbackInfo callbackInfo) {
 		if (tag.contains("ForgeCaps")) {
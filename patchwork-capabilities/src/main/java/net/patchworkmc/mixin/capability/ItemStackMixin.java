@@ -37,7 +37,7 @@ import net.patchworkmc.impl.capability.CapabilityProviderHolder;
 
 @Mixin(ItemStack.class)
 public class ItemStackMixin implements CapabilityProviderHolder {
-	private final CapabilityProvider<ItemStack> provider = new BaseCapabilityProvider<>(ItemStack.class, (ItemStack) (Object) this);
+	private final CapabilityProvider<ItemStack> provider = new BaseCapabilityProvider<>(ItemStack.class, (ItemStack) (Object) this, BaseCapabilityProvider.LAZY_ITEM_STACKS);
 
 	@Nonnull
 	@Override
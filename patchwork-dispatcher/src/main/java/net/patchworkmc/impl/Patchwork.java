@@ -19,9 +19,16 @@
 
 package net.patchworkmc.impl;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -29,7 +36,9 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.fml.DeferredWorkQueue;
 import net.minecraftforge.fml.DistExecutor;
 import net.minecraftforge.fml.ModContainer;
 import net.minecraftforge.fml.ModLoadingContext;
@@ -50,30 +59,121 @@ import net.fabricmc.api.ModInitializer;
 import net.fabricmc.loader.api.FabricLoader;
 
 import net.patchworkmc.api.ForgeInitializer;
+import net.patchworkmc.impl.fml.StartupTimeline;
 import net.patchworkmc.impl.registries.RegistryEventDispatcher;
 
 public class Patchwork implements ModInitializer {
 	private static final Logger LOGGER = LogManager.getLogger(Patchwork.class);
 
-	private static void dispatch(Map<ForgeInitializer, FMLModContainer> mods, Event event) {
-		dispatch(mods, container -> event);
-	}
+	/**
+	 * Lets mods be constructed and handle the lifecycle events Forge dispatches concurrently on several threads,
+	 * like Forge does. Registry events and sided setup are always dispatched one mod at a time.
+	 */
+	private static final boolean PARALLEL = Boolean.getBoolean("patchwork.parallelModLoading");
 
-	private static void dispatch(Map<ForgeInitializer, FMLModContainer> mods, Function<ModContainer, Event> provider) {
+	private static void dispatch(Map<ForgeInitializer, FMLModContainer> mods, RegistryEvent.Register<?> event) {
 		for (FMLModContainer container : mods.values()) {
 			ModLoadingContext.get().setActiveContainer(container, new FMLJavaModLoadingContext(container));
 
-			container.getEventBus().post(provider.apply(container));
+			try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.MOD, container.getModId(), event.getName().toString())) {
+				container.getEventBus().post(event);
+			}
 
 			ModLoadingContext.get().setActiveContainer(null, "minecraft");
 		}
 	}
 
+	/**
+	 * Dispatches a lifecycle event to every mod, then runs the work they deferred with {@link DeferredWorkQueue}
+	 * on this thread.
+	 */
+	private static void dispatchLifecycle(Map<ForgeInitializer, FMLModContainer> mods, boolean parallel, String phase, Function<ModContainer, Event> provider) {
+		PatchworkInitializationException error;
+
+		try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.PHASE, phase)) {
+			error = forEachMod(mods, parallel, phase, (initializer, container) -> container.getEventBus().post(provider.apply(container)));
+		}
+
+		try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.PHASE, "deferred work", phase)) {
+			for (Throwable t : DeferredWorkQueue.runTasks()) {
+				if (error == null) {
+					error = new PatchworkInitializationException("Failed to run deferred work of Patchwork mods after " + phase);
+				}
+
+				error.addSuppressed(t);
+			}
+		}
+
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Runs an action for every mod within its {@link ModLoadingContext}, either on the calling thread or on a
+	 * fork-join pool. Every mod is visited even if some of them fail.
+	 *
+	 * @return an exception holding every failure, or null if all mods succeeded
+	 */
+	private static PatchworkInitializationException forEachMod(Map<ForgeInitializer, FMLModContainer> mods, boolean parallel, String phase, BiConsumer<ForgeInitializer, FMLModContainer> action) {
+		Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+		if (!parallel) {
+			mods.forEach((initializer, container) -> runForMod(initializer, container, phase, action, errors));
+		} else {
+			ForkJoinPool pool = createPool();
+
+			try {
+				List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+				mods.forEach((initializer, container) -> tasks.add(pool.submit(() -> runForMod(initializer, container, phase, action, errors))));
+				tasks.forEach(ForkJoinTask::join);
+			} finally {
+				pool.shutdown();
+			}
+		}
+
+		if (errors.isEmpty()) {
+			return null;
+		}
+
+		PatchworkInitializationException error = new PatchworkInitializationException("Patchwork mods failed during " + phase);
+		errors.forEach(error::addSuppressed);
+
+		return error;
+	}
+
+	private static void runForMod(ForgeInitializer initializer, FMLModContainer container, String phase, BiConsumer<ForgeInitializer, FMLModContainer> action, Queue<Throwable> errors) {
+		ModLoadingContext.get().setActiveContainer(container, new FMLJavaModLoadingContext(container));
+
+		try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.MOD, container.getModId(), phase)) {
+			action.accept(initializer, container);
+		} catch (Throwable t) {
+			errors.add(t);
+		} finally {
+			ModLoadingContext.get().setActiveContainer(null, "minecraft");
+		}
+	}
+
+	private static ForkJoinPool createPool() {
+		// Mods may rely on the context class loader to find their resources, so keep the one of the loading thread
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+		return new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("Patchwork Mod Loading #" + thread.getPoolIndex());
+			thread.setContextClassLoader(classLoader);
+			return thread;
+		}, null, false);
+	}
+
 	@Override
 	public void onInitialize() {
+		StartupTimeline.Span initialization = StartupTimeline.begin(StartupTimeline.PHASE, "Patchwork initialization");
+
 		ForgeRegistries.init();
 
-		Map<ForgeInitializer, FMLModContainer> mods = new HashMap<>();
+		Map<ForgeInitializer, FMLModContainer> mods = new LinkedHashMap<>();
 
 		// Construct forge mods
 
@@ -85,27 +185,18 @@ public class Patchwork implements ModInitializer {
 			throw new PatchworkInitializationException("Failed to get Patchwork entrypoints!", t);
 		}
 
-		PatchworkInitializationException error = null;
-
 		for (ForgeInitializer initializer : entrypoints) {
-			LOGGER.info("Constructing Patchwork mod: " + initializer.getModId());
-
-			FMLModContainer container = new FMLModContainer(initializer.getModId());
-			ModLoadingContext.get().setActiveContainer(container, new FMLJavaModLoadingContext(container));
+			mods.put(initializer, new FMLModContainer(initializer.getModId()));
+		}
 
-			try {
-				initializer.onForgeInitialize();
-			} catch (Throwable t) {
-				if (error == null) {
-					error = new PatchworkInitializationException("Failed to construct Patchwork mods");
-				}
+		PatchworkInitializationException error;
 
-				error.addSuppressed(t);
-			}
+		try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.PHASE, "mod construction")) {
+			error = forEachMod(mods, PARALLEL, "mod construction", (initializer, container) -> {
+				LOGGER.info("Constructing Patchwork mod: " + initializer.getModId());
 
-			ModLoadingContext.get().setActiveContainer(null, "minecraft");
-
-			mods.put(initializer, container);
+				initializer.onForgeInitialize();
+			});
 		}
 
 		if (error != null) {
@@ -114,24 +205,30 @@ public class Patchwork implements ModInitializer {
 
 		// Send initialization events
 
-		RegistryEventDispatcher.dispatchRegistryEvents(event -> dispatch(mods, event));
-		dispatch(mods, FMLCommonSetupEvent::new);
+		try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.PHASE, "registry events")) {
+			RegistryEventDispatcher.dispatchRegistryEvents(event -> dispatch(mods, event));
+		}
+
+		dispatchLifecycle(mods, PARALLEL, "common setup", FMLCommonSetupEvent::new);
 
 		DistExecutor.runWhenOn(Dist.CLIENT, () -> () -> {
-			dispatch(mods, container -> new FMLClientSetupEvent(MinecraftClient::getInstance, container));
+			dispatchLifecycle(mods, false, "client setup", container -> new FMLClientSetupEvent(MinecraftClient::getInstance, container));
 		});
 
 		DistExecutor.runWhenOn(Dist.DEDICATED_SERVER, () -> () -> {
 			Object gameInstance = FabricLoader.getInstance().getGameInstance();
 			Supplier<DedicatedServer> supplier = () -> (DedicatedServer) gameInstance;
 
-			dispatch(mods, container -> new FMLDedicatedServerSetupEvent(supplier, container));
+			dispatchLifecycle(mods, false, "dedicated server setup", container -> new FMLDedicatedServerSetupEvent(supplier, container));
 		});
 
-		dispatch(mods, InterModEnqueueEvent::new);
-		dispatch(mods, InterModProcessEvent::new);
-		dispatch(mods, FMLLoadCompleteEvent::new);
+		dispatchLifecycle(mods, PARALLEL, "InterMod enqueue", InterModEnqueueEvent::new);
+		dispatchLifecycle(mods, PARALLEL, "InterMod process", InterModProcessEvent::new);
+		dispatchLifecycle(mods, PARALLEL, "load complete", FMLLoadCompleteEvent::new);
 
 		MinecraftForge.EVENT_BUS.start();
+
+		initialization.close();
+		StartupTimeline.finish();
 	}
 }
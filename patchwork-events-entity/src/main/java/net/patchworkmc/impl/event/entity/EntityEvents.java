@@ -60,9 +60,17 @@ import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
 import net.fabricmc.fabric.api.event.player.UseItemCallback;
 
+import net.patchworkmc.impl.fml.event.ListenerPresence;
+
 public class EntityEvents implements ModInitializer {
 	private static final Logger LOGGER = LogManager.getLogger("patchwork-events-entity");
 
+	// These hooks run for every entity on every tick, so skip building the event entirely when nobody listens.
+	private static final ListenerPresence LIVING_UPDATE = ListenerPresence.of(MinecraftForge.EVENT_BUS, LivingEvent.LivingUpdateEvent.class);
+	private static final ListenerPresence ENTERING_CHUNK = ListenerPresence.of(MinecraftForge.EVENT_BUS, EntityEvent.EnteringChunk.class);
+	private static final ListenerPresence SET_ATTACK_TARGET = ListenerPresence.of(MinecraftForge.EVENT_BUS, LivingSetAttackTargetEvent.class);
+	private static final ListenerPresence EYE_HEIGHT = ListenerPresence.of(MinecraftForge.EVENT_BUS, EntityEvent.EyeHeight.class);
+
 	public static ActionResult onInteractEntity(PlayerEntity player, Entity entity, Hand hand) {
 		PlayerInteractEvent.EntityInteract event = new PlayerInteractEvent.EntityInteract(player, hand, entity);
 
@@ -76,6 +84,10 @@ public class EntityEvents implements ModInitializer {
 	}
 
 	public static boolean onLivingUpdateEvent(LivingEntity entity) {
+		if (!LIVING_UPDATE.hasListeners()) {
+			return false;
+		}
+
 		return MinecraftForge.EVENT_BUS.post(new LivingEvent.LivingUpdateEvent(entity));
 	}
 
@@ -88,6 +100,10 @@ public class EntityEvents implements ModInitializer {
 	}
 
 	public static void onEnteringChunk(Entity entity, int newChunkX, int newChunkZ, int oldChunkX, int oldChunkZ) {
+		if (!ENTERING_CHUNK.hasListeners()) {
+			return;
+		}
+
 		MinecraftForge.EVENT_BUS.post(new EntityEvent.EnteringChunk(entity, newChunkX, newChunkZ, oldChunkX, oldChunkZ));
 	}
 
@@ -101,6 +117,10 @@ public class EntityEvents implements ModInitializer {
 	}
 
 	public static void onLivingSetAttackTarget(LivingEntity entity, LivingEntity target) {
+		if (!SET_ATTACK_TARGET.hasListeners()) {
+			return;
+		}
+
 		MinecraftForge.EVENT_BUS.post(new LivingSetAttackTargetEvent(entity, target));
 	}
 
@@ -124,6 +144,10 @@ public class EntityEvents implements ModInitializer {
 	}
 
 	public static float getEyeHeight(Entity entity, EntityPose pose, EntityDimensions size, float defaultHeight) {
+		if (!EYE_HEIGHT.hasListeners()) {
+			return defaultHeight;
+		}
+
 		EntityEvent.EyeHeight event = new EntityEvent.EyeHeight(entity, pose, size, defaultHeight);
 		MinecraftForge.EVENT_BUS.post(event);
 		return event.getNewHeight();
@@ -26,6 +26,12 @@ import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.world.World;
 
+/**
+ * Base class of the events fired at the start and end of each tick.
+ *
+ * <p>Some tick events are fired very often, so Patchwork may be configured to reuse a single instance per thread
+ * for them. For this reason, listeners must not keep a reference to a tick event after they have returned.</p>
+ */
 public class TickEvent extends Event {
 	public final Type type;
 	public final LogicalSide side;
@@ -36,16 +36,32 @@ import net.fabricmc.fabric.api.event.world.WorldTickCallback;
 public class LifecycleEvents implements ModInitializer {
 	public static void fireWorldTickEvent(TickEvent.Phase phase, World world) {
 		LogicalSide side = world.isClient() ? LogicalSide.CLIENT : LogicalSide.SERVER;
+
+		if (ReusableTickEvents.isEnabled()) {
+			ReusableTickEvents.get().postWorldTick(side, phase, world);
+			return;
+		}
+
 		TickEvent.WorldTickEvent event = new TickEvent.WorldTickEvent(side, phase, world);
 
 		MinecraftForge.EVENT_BUS.post(event);
 	}
 
 	public static void onPlayerPreTick(PlayerEntity player) {
+		if (ReusableTickEvents.isEnabled()) {
+			ReusableTickEvents.get().postPlayerTick(TickEvent.Phase.START, player);
+			return;
+		}
+
 		MinecraftForge.EVENT_BUS.post(new TickEvent.PlayerTickEvent(TickEvent.Phase.START, player));
 	}
 
 	public static void onPlayerPostTick(PlayerEntity player) {
+		if (ReusableTickEvents.isEnabled()) {
+			ReusableTickEvents.get().postPlayerTick(TickEvent.Phase.END, player);
+			return;
+		}
+
 		MinecraftForge.EVENT_BUS.post(new TickEvent.PlayerTickEvent(TickEvent.Phase.END, player));
 	}
 
@@ -0,0 +1,185 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.event.lifecycle;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.fml.LogicalSide;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.world.World;
+
+import net.patchworkmc.impl.fml.event.ListenerTrackingEventBus;
+import net.patchworkmc.mixin.event.lifecycle.EventAccessor;
+import net.patchworkmc.mixin.event.lifecycle.PlayerTickEventAccessor;
+import net.patchworkmc.mixin.event.lifecycle.TickEventAccessor;
+import net.patchworkmc.mixin.event.lifecycle.WorldTickEventAccessor;
+
+/**
+ * Posts the per-player and per-world tick events using one reusable instance per thread, instead of allocating
+ * a new event for every player and world twice a tick.
+ *
+ * <p>This is opt-in with {@code -Dpatchwork.events.reuseTickEvents=true}, since a mod that keeps a reference to
+ * a tick event would silently see it change under its feet. Adding {@code -Dpatchwork.events.reuseTickEvents.debug=true}
+ * helps finding such mods: a fresh event is posted every time, and each one is checked to have been garbage collected
+ * together with an object allocated right after it. An event that outlives that object was retained by a listener,
+ * which is logged along with the listeners registered for the event.</p>
+ */
+public final class ReusableTickEvents {
+	private static final Logger LOGGER = LogManager.getLogger(ReusableTickEvents.class);
+	private static final boolean ENABLED = Boolean.getBoolean("patchwork.events.reuseTickEvents");
+	private static final boolean DEBUG = ENABLED && Boolean.getBoolean("patchwork.events.reuseTickEvents.debug");
+	// Retained events are only reported once per type, and checks are given up on past this many pending ones
+	private static final int MAX_PENDING_CHECKS = 4096;
+	private static final Set<Class<?>> REPORTED = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private static final ThreadLocal<ReusableTickEvents> INSTANCES = ThreadLocal.withInitial(ReusableTickEvents::new);
+
+	private final TickEvent.PlayerTickEvent playerTick = new TickEvent.PlayerTickEvent(TickEvent.Phase.START, null);
+	private final TickEvent.WorldTickEvent worldTick = new TickEvent.WorldTickEvent(LogicalSide.SERVER, TickEvent.Phase.START, null);
+	private final ArrayDeque<RetentionCheck> pendingChecks = new ArrayDeque<>();
+	private long generation;
+	private boolean playerTickInUse;
+	private boolean worldTickInUse;
+
+	static {
+		if (DEBUG) {
+			LOGGER.warn("Tick event reuse debug mode is enabled, listeners retaining tick events will be logged");
+		}
+	}
+
+	private ReusableTickEvents() {
+	}
+
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	public static ReusableTickEvents get() {
+		return INSTANCES.get();
+	}
+
+	public void postPlayerTick(TickEvent.Phase phase, PlayerEntity player) {
+		// Debug mode always posts a fresh instance, and nested posts (a listener ticking another player) can't share
+		// the instance that is still being dispatched
+		if (DEBUG || playerTickInUse) {
+			post(new TickEvent.PlayerTickEvent(phase, player));
+			return;
+		}
+
+		playerTickInUse = true;
+
+		try {
+			reset(playerTick);
+			((TickEventAccessor) playerTick).patchwork$setPhase(phase);
+			((TickEventAccessor) playerTick).patchwork$setSide(player instanceof ServerPlayerEntity ? LogicalSide.SERVER : LogicalSide.CLIENT);
+			((PlayerTickEventAccessor) playerTick).patchwork$setPlayer(player);
+
+			MinecraftForge.EVENT_BUS.post(playerTick);
+		} finally {
+			// Don't keep the player reachable from the thread local
+			((PlayerTickEventAccessor) playerTick).patchwork$setPlayer(null);
+			playerTickInUse = false;
+		}
+	}
+
+	public void postWorldTick(LogicalSide side, TickEvent.Phase phase, World world) {
+		if (DEBUG || worldTickInUse) {
+			post(new TickEvent.WorldTickEvent(side, phase, world));
+			return;
+		}
+
+		worldTickInUse = true;
+
+		try {
+			reset(worldTick);
+			((TickEventAccessor) worldTick).patchwork$setPhase(phase);
+			((TickEventAccessor) worldTick).patchwork$setSide(side);
+			((WorldTickEventAccessor) worldTick).patchwork$setWorld(world);
+
+			MinecraftForge.EVENT_BUS.post(worldTick);
+		} finally {
+			((WorldTickEventAccessor) worldTick).patchwork$setWorld(null);
+			worldTickInUse = false;
+		}
+	}
+
+	private void post(TickEvent event) {
+		RetentionCheck check = DEBUG ? new RetentionCheck(event, generation++) : null;
+
+		MinecraftForge.EVENT_BUS.post(event);
+
+		if (check != null) {
+			checkRetention();
+			pendingChecks.add(check);
+		}
+	}
+
+	/**
+	 * Reports the events that survived a collection of the object allocated right after them, meaning something
+	 * still refers to them.
+	 */
+	private void checkRetention() {
+		while (!pendingChecks.isEmpty() && (pendingChecks.size() > MAX_PENDING_CHECKS || pendingChecks.peek().isDecided())) {
+			RetentionCheck check = pendingChecks.poll();
+			TickEvent event = check.event.get();
+
+			if (event != null && check.isDecided() && REPORTED.add(event.getClass())) {
+				LOGGER.error("A {} posted {} tick events ago is still referenced after dispatch, a listener retains tick events and will see them change when they are reused. Listeners: {}",
+						event.getClass().getName(), generation - check.generation, MinecraftForge.EVENT_BUS instanceof ListenerTrackingEventBus
+								? ((ListenerTrackingEventBus) MinecraftForge.EVENT_BUS).getListeners(event.getClass()) : "unknown");
+			}
+		}
+	}
+
+	/**
+	 * Tick events are neither cancellable nor have a result, so the only state the bus leaves behind is the
+	 * phase, which it refuses to move backwards.
+	 */
+	private static void reset(Event event) {
+		((EventAccessor) event).patchwork$setPhase(null);
+	}
+
+	private static class RetentionCheck {
+		private final WeakReference<TickEvent> event;
+		// Allocated right after the event, so that both are collected together unless something refers to the event
+		private final WeakReference<Object> sentinel;
+		private final long generation;
+
+		private RetentionCheck(TickEvent event, long generation) {
+			this.event = new WeakReference<>(event);
+			this.sentinel = new WeakReference<>(new Object());
+			this.generation = generation;
+		}
+
+		private boolean isDecided() {
+			return sentinel.get() == null;
+		}
+	}
+}
@@ -22,10 +22,13 @@ package net.minecraftforge.common;
 import net.minecraftforge.eventbus.api.BusBuilder;
 import net.minecraftforge.eventbus.api.IEventBus;
 
+import net.patchworkmc.impl.fml.event.ListenerTrackingEventBus;
+import net.patchworkmc.impl.fml.event.ProfilingEventBus;
+
 public class MinecraftForge {
 	/**
 	 * The core Forge EventBus, all events for Forge will be fired on this. You should use this to register all your
 	 * listeners.
 	 */
-	public static final IEventBus EVENT_BUS = BusBuilder.builder().startShutdown().build();
+	public static final IEventBus EVENT_BUS = new ListenerTrackingEventBus(ProfilingEventBus.wrapIfEnabled(BusBuilder.builder().startShutdown().build()));
 }
@@ -0,0 +1,123 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.minecraftforge.fml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Lifecycle events may be dispatched to several mods at once. Work that isn't thread safe, such as registering
+ * things with vanilla, should be enqueued here instead: it will be run on the main thread once every mod has
+ * handled the current lifecycle event.
+ */
+public class DeferredWorkQueue {
+	private static final ConcurrentLinkedQueue<TaskInfo> taskQueue = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Run a task on the loading thread at the next available opportunity, i.e.
+	 * after the current lifecycle event has completed.
+	 *
+	 * @param workToEnqueue A {@link Runnable} to execute later, on the loading thread
+	 * @return A {@link CompletableFuture} that completes at said time
+	 */
+	public static CompletableFuture<Void> runLater(Runnable workToEnqueue) {
+		return getLater(() -> {
+			workToEnqueue.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Run a task computing a value on the loading thread at the next available
+	 * opportunity, i.e. after the current lifecycle event has completed.
+	 *
+	 * @param workToEnqueue A {@link Supplier} of a value to compute later, on the loading thread
+	 * @return A {@link CompletableFuture} that completes with the computed value at said time
+	 */
+	public static <T> CompletableFuture<T> getLater(Supplier<T> workToEnqueue) {
+		return getLaterChecked(workToEnqueue::get);
+	}
+
+	/**
+	 * Like {@link #getLater(Supplier)}, but the task may throw checked exceptions, which complete the returned
+	 * future exceptionally.
+	 *
+	 * @param workToEnqueue A {@link Callable} computing a value later, on the loading thread
+	 * @return A {@link CompletableFuture} that completes with the computed value at said time
+	 */
+	public static <T> CompletableFuture<T> getLaterChecked(Callable<T> workToEnqueue) {
+		ModLoadingContext context = ModLoadingContext.get();
+		CompletableFuture<T> future = new CompletableFuture<>();
+
+		taskQueue.add(new TaskInfo(context.getActiveContainerOrNull(), context.extension(), () -> {
+			try {
+				future.complete(workToEnqueue.call());
+				return null;
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+				throw t;
+			}
+		}));
+
+		return future;
+	}
+
+	/**
+	 * Runs every task enqueued so far on the current thread, each within the {@link ModLoadingContext} of the mod
+	 * that enqueued it. Called by Patchwork after each lifecycle event.
+	 *
+	 * @return the errors thrown by the tasks, so that they can be reported together
+	 */
+	public static List<Throwable> runTasks() {
+		List<Throwable> errors = new ArrayList<>();
+		ModLoadingContext context = ModLoadingContext.get();
+		TaskInfo task;
+
+		while ((task = taskQueue.poll()) != null) {
+			context.setActiveContainer(task.owner, task.extension);
+
+			try {
+				task.task.call();
+			} catch (Throwable t) {
+				errors.add(t);
+			} finally {
+				context.setActiveContainer(null, "minecraft");
+			}
+		}
+
+		return errors;
+	}
+
+	private static class TaskInfo {
+		private final ModContainer owner;
+		private final Object extension;
+		private final Callable<?> task;
+
+		TaskInfo(ModContainer owner, Object extension, Callable<?> task) {
+			this.owner = owner;
+			this.extension = extension;
+			this.task = task;
+		}
+	}
+}
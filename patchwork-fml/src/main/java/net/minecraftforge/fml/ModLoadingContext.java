@@ -44,6 +44,10 @@ public class ModLoadingContext {
 		return activeContainer;
 	}
 
+	ModContainer getActiveContainerOrNull() {
+		return activeContainer;
+	}
+
 	public String getActiveNamespace() {
 		if (activeContainer == null) {
 			return "minecraft";
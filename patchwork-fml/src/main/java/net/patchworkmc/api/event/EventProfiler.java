@@ -0,0 +1,127 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.event;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.common.MinecraftForge;
+
+import net.patchworkmc.impl.fml.ThreadMetrics;
+import net.patchworkmc.impl.fml.event.EventProfiles;
+
+/**
+ * Read access to the timing and allocation statistics of {@link MinecraftForge#EVENT_BUS}.
+ *
+ * <p>Statistics are only recorded when the game is started with {@code -Dpatchwork.eventbus.profiling=true}.
+ * In that case, every post and every listener call is also reported to Java Flight Recorder as
+ * {@code patchwork.EventDispatch} and {@code patchwork.EventListener} events, when the running JVM supports it.</p>
+ */
+public final class EventProfiler {
+	private EventProfiler() {
+	}
+
+	public static boolean isEnabled() {
+		return EventProfiles.ENABLED;
+	}
+
+	/**
+	 * @return whether the running JVM is able to report the allocations of each thread
+	 */
+	public static boolean isAllocationTracked() {
+		return ThreadMetrics.isAllocationTracked();
+	}
+
+	/**
+	 * @return one entry per posted event class, covering the whole dispatch to every listener
+	 */
+	public static List<Stats> getDispatchStats() {
+		return isEnabled() ? EventProfiles.snapshotDispatches() : Collections.emptyList();
+	}
+
+	/**
+	 * @return one entry per posted event class and listener owner, covering all listeners of that owner
+	 */
+	public static List<Stats> getListenerStats() {
+		return isEnabled() ? EventProfiles.snapshotListeners() : Collections.emptyList();
+	}
+
+	public static void reset() {
+		EventProfiles.reset();
+	}
+
+	/**
+	 * A point in time copy of the statistics of one event class. Times and allocations are inclusive, so
+	 * listeners posting further events also account for the cost of these nested dispatches.
+	 */
+	public static final class Stats {
+		private final Class<?> eventType;
+		private final String owner;
+		private final long invocations;
+		private final long totalNanos;
+		private final long p99Nanos;
+		private final long allocatedBytes;
+
+		public Stats(Class<?> eventType, @Nullable String owner, long invocations, long totalNanos, long p99Nanos, long allocatedBytes) {
+			this.eventType = eventType;
+			this.owner = owner;
+			this.invocations = invocations;
+			this.totalNanos = totalNanos;
+			this.p99Nanos = p99Nanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		public Class<?> getEventType() {
+			return eventType;
+		}
+
+		/**
+		 * @return the mod id the listeners were registered by, or null for statistics covering a whole dispatch
+		 */
+		@Nullable
+		public String getOwner() {
+			return owner;
+		}
+
+		public long getInvocations() {
+			return invocations;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getP99Nanos() {
+			return p99Nanos;
+		}
+
+		public long getAllocatedBytes() {
+			return allocatedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return eventType.getName() + (owner == null ? "" : " [" + owner + "]") + ": " + invocations + " calls, "
+					+ totalNanos + " ns total, " + p99Nanos + " ns p99, " + allocatedBytes + " bytes";
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.stream.JsonWriter;
+import net.minecraftforge.fml.loading.FMLPaths;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Records how long each part of Patchwork's startup takes, so that slow mods can be found.
+ *
+ * <p>When the game is started with {@code -Dpatchwork.startupTimeline=true}, every span records its wall time,
+ * the CPU time and the bytes allocated by its thread. Once startup is done, the spans are written to
+ * {@code logs/patchwork-startup-trace.json} in the Chrome trace event format (viewable in {@code chrome://tracing}
+ * or Perfetto), and a summary of the slowest phases and mods is logged.</p>
+ */
+public final class StartupTimeline {
+	public static final String PHASE = "phase";
+	public static final String MOD = "mod";
+	public static final String REGISTRY = "registry";
+
+	private static final Logger LOGGER = LogManager.getLogger(StartupTimeline.class);
+	private static final boolean ENABLED = Boolean.getBoolean("patchwork.startupTimeline");
+	private static final int SUMMARY_SIZE = 20;
+	private static final Span NO_OP = new Span();
+	private static final long ORIGIN = System.nanoTime();
+	private static final Queue<Entry> ENTRIES = new ConcurrentLinkedQueue<>();
+
+	private StartupTimeline() {
+	}
+
+	public static Span begin(String category, String name) {
+		return begin(category, name, null);
+	}
+
+	/**
+	 * Starts a span on the current thread. The span must be closed on the same thread.
+	 *
+	 * @param category one of {@link #PHASE}, {@link #MOD} or {@link #REGISTRY}
+	 * @param name what is being timed, for example a mod id
+	 * @param detail additional context shown with the span, or null
+	 * @return the span to close once the work is done
+	 */
+	public static Span begin(String category, String name, String detail) {
+		return ENABLED ? new Span(category, name, detail) : NO_OP;
+	}
+
+	/**
+	 * Writes the trace file and logs the summary of everything recorded so far.
+	 */
+	public static void finish() {
+		if (!ENABLED) {
+			return;
+		}
+
+		List<Entry> entries = new ArrayList<>(ENTRIES);
+		ENTRIES.clear();
+
+		Path path = FMLPaths.GAMEDIR.get().resolve("logs").resolve("patchwork-startup-trace.json");
+
+		try {
+			Files.createDirectories(path.getParent());
+
+			try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+				writeTrace(writer, entries);
+			}
+
+			LOGGER.info("Wrote Patchwork startup trace to {}", path);
+		} catch (IOException e) {
+			LOGGER.error("Failed to write Patchwork startup trace to {}", path, e);
+		}
+
+		logSummary(entries);
+	}
+
+	private static void writeTrace(Writer out, List<Entry> entries) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+
+		writer.beginObject();
+		writer.name("displayTimeUnit").value("ms");
+		writer.name("traceEvents").beginArray();
+
+		for (Entry entry : entries) {
+			writer.beginObject();
+			writer.name("name").value(entry.name);
+			writer.name("cat").value(entry.category);
+			writer.name("ph").value("X");
+			writer.name("pid").value(1);
+			writer.name("tid").value(entry.threadId);
+			writer.name("ts").value(TimeUnit.NANOSECONDS.toMicros(entry.start - ORIGIN));
+			writer.name("dur").value(TimeUnit.NANOSECONDS.toMicros(entry.wallNanos));
+			writer.name("args").beginObject();
+			writer.name("thread").value(entry.threadName);
+
+			if (entry.detail != null) {
+				writer.name("detail").value(entry.detail);
+			}
+
+			writer.name("cpuMillis").value(entry.cpuNanos / 1_000_000.0);
+			writer.name("allocatedBytes").value(entry.allocatedBytes);
+			writer.endObject();
+			writer.endObject();
+		}
+
+		writer.endArray();
+		writer.endObject();
+		writer.flush();
+	}
+
+	private static void logSummary(List<Entry> entries) {
+		Map<String, Entry> phases = new LinkedHashMap<>();
+		Map<String, Entry> mods = new LinkedHashMap<>();
+
+		for (Entry entry : entries) {
+			if (PHASE.equals(entry.category)) {
+				phases.merge(entry.name, entry, Entry::plus);
+			} else if (MOD.equals(entry.category)) {
+				mods.merge(entry.name, entry, Entry::plus);
+			}
+		}
+
+		LOGGER.info("Patchwork startup phases, slowest first:");
+		logSlowest(phases.values());
+		LOGGER.info("Patchwork mods by total startup cost across all phases, slowest first:");
+		logSlowest(mods.values());
+	}
+
+	private static void logSlowest(Iterable<Entry> entries) {
+		List<Entry> sorted = new ArrayList<>();
+		entries.forEach(sorted::add);
+		sorted.sort(Comparator.comparingLong((Entry entry) -> entry.wallNanos).reversed());
+
+		for (Entry entry : sorted.subList(0, Math.min(sorted.size(), SUMMARY_SIZE))) {
+			LOGGER.info(String.format("  %-40s %9.1f ms wall %9.1f ms cpu %10d KiB", entry.name, entry.wallNanos / 1_000_000.0,
+					entry.cpuNanos / 1_000_000.0, entry.allocatedBytes / 1024));
+		}
+	}
+
+	public static final class Span implements AutoCloseable {
+		private final String category;
+		private final String name;
+		private final String detail;
+		private final long start;
+		private final long cpuStart;
+		private final long allocatedStart;
+
+		/**
+		 * Creates the span returned while the timeline is disabled, which must not load {@link ThreadMetrics}: that
+		 * enables thread CPU time and allocation measurement for the whole JVM.
+		 */
+		private Span() {
+			this.category = null;
+			this.name = null;
+			this.detail = null;
+			this.start = 0;
+			this.cpuStart = 0;
+			this.allocatedStart = 0;
+		}
+
+		private Span(String category, String name, String detail) {
+			this.category = category;
+			this.name = name;
+			this.detail = detail;
+			this.start = System.nanoTime();
+			this.cpuStart = ThreadMetrics.cpuNanos();
+			this.allocatedStart = ThreadMetrics.allocatedBytes();
+		}
+
+		@Override
+		public void close() {
+			if (this == NO_OP) {
+				return;
+			}
+
+			Thread thread = Thread.currentThread();
+
+			ENTRIES.add(new Entry(category, name, detail, thread.getId(), thread.getName(), start, System.nanoTime() - start,
+					ThreadMetrics.cpuNanos() - cpuStart, ThreadMetrics.allocatedBytes() - allocatedStart));
+		}
+	}
+
+	private static final class Entry {
+		private final String category;
+		private final String name;
+		private final String detail;
+		private final long threadId;
+		private final String threadName;
+		private final long start;
+		private final long wallNanos;
+		private final long cpuNanos;
+		private final long allocatedBytes;
+
+		private Entry(String category, String name, String detail, long threadId, String threadName, long start, long wallNanos, long cpuNanos, long allocatedBytes) {
+			this.category = category;
+			this.name = name;
+			this.detail = detail;
+			this.threadId = threadId;
+			this.threadName = threadName;
+			this.start = start;
+			this.wallNanos = wallNanos;
+			this.cpuNanos = cpuNanos;
+			this.allocatedBytes = allocatedBytes;
+		}
+
+		private Entry plus(Entry other) {
+			return new Entry(category, name, null, threadId, threadName, Math.min(start, other.start), wallNanos + other.wallNanos,
+					cpuNanos + other.cpuNanos, allocatedBytes + other.allocatedBytes);
+		}
+	}
+}
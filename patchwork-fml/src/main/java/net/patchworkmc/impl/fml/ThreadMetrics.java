@@ -0,0 +1,78 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Per-thread CPU time and allocation counters, for the JVMs that support them.
+ */
+public final class ThreadMetrics {
+	private static final java.lang.management.ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	private static final com.sun.management.ThreadMXBean ALLOCATIONS = findAllocationBean();
+	private static final boolean CPU_TIME = enableCpuTime();
+
+	private ThreadMetrics() {
+	}
+
+	public static boolean isAllocationTracked() {
+		return ALLOCATIONS != null;
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread so far, or 0 if the JVM can't tell
+	 */
+	public static long allocatedBytes() {
+		return ALLOCATIONS == null ? 0 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return the CPU time used by the current thread so far in nanoseconds, or 0 if the JVM can't tell
+	 */
+	public static long cpuNanos() {
+		return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static boolean enableCpuTime() {
+		if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+			return false;
+		}
+
+		THREADS.setThreadCpuTimeEnabled(true);
+
+		return true;
+	}
+
+	private static com.sun.management.ThreadMXBean findAllocationBean() {
+		if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+			return null;
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			return null;
+		}
+
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		return threads;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.patchworkmc.api.event.EventProfiler;
+
+/**
+ * Timing and allocation counters for one event type, either for a whole dispatch or for the listeners of a
+ * single owner.
+ *
+ * <p>Latencies are kept in a log-linear histogram with four buckets per power of two, which is enough to report
+ * percentiles within 25% without keeping individual samples.</p>
+ */
+final class DispatchStats {
+	private static final int BUCKETS = 248;
+
+	private final Class<?> eventType;
+	private final String owner;
+	private final LongAdder invocations = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder allocatedBytes = new LongAdder();
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+	DispatchStats(Class<?> eventType, String owner) {
+		this.eventType = eventType;
+		this.owner = owner;
+	}
+
+	Class<?> getEventType() {
+		return eventType;
+	}
+
+	void record(long nanos, long allocated) {
+		invocations.increment();
+		totalNanos.add(nanos);
+
+		if (allocated > 0) {
+			allocatedBytes.add(allocated);
+		}
+
+		histogram.incrementAndGet(bucket(nanos));
+	}
+
+	void reset() {
+		invocations.reset();
+		totalNanos.reset();
+		allocatedBytes.reset();
+
+		for (int i = 0; i < BUCKETS; i++) {
+			histogram.set(i, 0);
+		}
+	}
+
+	EventProfiler.Stats snapshot() {
+		return new EventProfiler.Stats(eventType, owner, invocations.sum(), totalNanos.sum(), percentile(0.99), allocatedBytes.sum());
+	}
+
+	private long percentile(double fraction) {
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = histogram.get(i);
+			total += counts[i];
+		}
+
+		long target = (long) Math.ceil(total * fraction);
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+
+			if (seen >= target && seen > 0) {
+				return upperBound(i);
+			}
+		}
+
+		return 0;
+	}
+
+	private static int bucket(long nanos) {
+		if (nanos < 4) {
+			return (int) Math.max(nanos, 0);
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int mantissa = (int) (nanos >>> (exponent - 2)) & 3;
+
+		return 4 + (exponent - 2) * 4 + mantissa;
+	}
+
+	private static long upperBound(int bucket) {
+		if (bucket < 4) {
+			return bucket;
+		}
+
+		int exponent = (bucket - 4) / 4 + 2;
+		int mantissa = (bucket - 4) % 4;
+
+		return ((4L + mantissa + 1) << (exponent - 2)) - 1;
+	}
+}
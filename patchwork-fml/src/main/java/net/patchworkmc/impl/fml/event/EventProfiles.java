@@ -0,0 +1,79 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.patchworkmc.api.event.EventProfiler;
+
+/**
+ * Holds the statistics recorded by {@link ProfilingEventBus}.
+ */
+public final class EventProfiles {
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.eventbus.profiling");
+
+	private static final ConcurrentMap<Class<?>, DispatchStats> DISPATCHES = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<String, ConcurrentMap<Class<?>, DispatchStats>> LISTENERS = new ConcurrentHashMap<>();
+
+	private EventProfiles() {
+	}
+
+	static DispatchStats getDispatchStats(Class<?> eventType) {
+		return DISPATCHES.computeIfAbsent(eventType, type -> new DispatchStats(type, null));
+	}
+
+	static DispatchStats getListenerStats(String owner, Class<?> eventType) {
+		return LISTENERS.computeIfAbsent(owner, key -> new ConcurrentHashMap<>())
+				.computeIfAbsent(eventType, type -> new DispatchStats(type, owner));
+	}
+
+	public static List<EventProfiler.Stats> snapshotDispatches() {
+		List<EventProfiler.Stats> stats = new ArrayList<>();
+
+		for (DispatchStats dispatch : DISPATCHES.values()) {
+			stats.add(dispatch.snapshot());
+		}
+
+		return stats;
+	}
+
+	public static List<EventProfiler.Stats> snapshotListeners() {
+		List<EventProfiler.Stats> stats = new ArrayList<>();
+
+		for (ConcurrentMap<Class<?>, DispatchStats> owner : LISTENERS.values()) {
+			for (DispatchStats listener : owner.values()) {
+				stats.add(listener.snapshot());
+			}
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Zeroes every counter in place, since running listeners keep hold of the stats they record into.
+	 */
+	public static void reset() {
+		DISPATCHES.values().forEach(DispatchStats::reset);
+		LISTENERS.values().forEach(owner -> owner.values().forEach(DispatchStats::reset));
+	}
+}
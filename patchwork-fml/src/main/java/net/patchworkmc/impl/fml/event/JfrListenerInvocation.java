@@ -0,0 +1,74 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event covering one listener call on a profiled event bus.
+ */
+@Name("patchwork.EventListener")
+@Label("Event Listener")
+@Category("Patchwork")
+@Threshold("1 ms")
+final class JfrListenerInvocation extends Event {
+	@Label("Event Type")
+	Class<?> eventType;
+
+	@Label("Owner")
+	String owner;
+
+	@Label("Allocated")
+	@DataAmount
+	long allocated;
+
+	static Object start() {
+		JfrListenerInvocation event = new JfrListenerInvocation();
+
+		if (!event.isEnabled()) {
+			return null;
+		}
+
+		event.begin();
+
+		return event;
+	}
+
+	static void finish(Object started, Class<?> eventType, String owner, long allocated) {
+		if (started == null) {
+			return;
+		}
+
+		JfrListenerInvocation event = (JfrListenerInvocation) started;
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.eventType = eventType;
+			event.owner = owner;
+			event.allocated = allocated;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.eventbus.api.IEventBus;
+
+/**
+ * A cheap flag telling whether anything on a bus could receive a given event type.
+ *
+ * <p>Hot hooks hold one of these in a static field and check {@link #hasListeners()} before
+ * constructing and posting their event, so that nothing is allocated when no mod is listening.</p>
+ */
+public final class ListenerPresence {
+	private static final ListenerPresence ALWAYS = new ListenerPresence(Event.class, true);
+
+	private final Class<? extends Event> eventType;
+	private volatile boolean present;
+
+	ListenerPresence(Class<? extends Event> eventType, boolean present) {
+		this.eventType = eventType;
+		this.present = present;
+	}
+
+	/**
+	 * Gets the presence flag for an event type on the given bus.
+	 *
+	 * <p>If the bus does not track its listeners, the returned flag always reports listeners as present.</p>
+	 *
+	 * @param bus the bus the event will be posted to
+	 * @param eventType the exact type of the event that will be posted
+	 * @return a flag that is kept up to date as listeners register and unregister
+	 */
+	public static ListenerPresence of(IEventBus bus, Class<? extends Event> eventType) {
+		if (bus instanceof ListenerTrackingEventBus) {
+			return ((ListenerTrackingEventBus) bus).getPresence(eventType);
+		}
+
+		return ALWAYS;
+	}
+
+	public Class<? extends Event> getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * @return false if posting an event of this type would definitely not reach any listener
+	 */
+	public boolean hasListeners() {
+		return present;
+	}
+
+	void setPresent(boolean present) {
+		this.present = present;
+	}
+}
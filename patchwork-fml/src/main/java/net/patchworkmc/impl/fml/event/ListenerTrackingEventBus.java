@@ -0,0 +1,222 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import net.jodah.typetools.TypeResolver;
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.GenericEvent;
+import net.minecraftforge.eventbus.api.IEventBus;
+
+/**
+ * An {@link IEventBus} that forwards everything to another bus, while keeping track of which event types
+ * have listeners so that {@link ListenerPresence} flags can be handed out for them.
+ *
+ * <p>Registrations are rare compared to posts, so every flag is simply recomputed whenever a listener is
+ * registered or unregistered. Whenever the type of a listener cannot be determined, it is assumed to listen
+ * to every event.</p>
+ */
+public class ListenerTrackingEventBus implements IEventBus {
+	private final IEventBus delegate;
+	private final Object lock = new Object();
+	private final Map<Object, List<Class<?>>> registrations = new HashMap<>();
+	private final Map<Class<?>, Integer> listenerCounts = new HashMap<>();
+	private final Map<Class<? extends Event>, ListenerPresence> presences = new HashMap<>();
+
+	public ListenerTrackingEventBus(IEventBus delegate) {
+		this.delegate = delegate;
+	}
+
+	public ListenerPresence getPresence(Class<? extends Event> eventType) {
+		synchronized (lock) {
+			return presences.computeIfAbsent(eventType, type -> new ListenerPresence(type, computePresence(type)));
+		}
+	}
+
+	/**
+	 * @return The registered objects, classes and consumers that may be receiving events of the given type
+	 */
+	public List<Object> getListeners(Class<? extends Event> eventType) {
+		List<Object> listeners = new ArrayList<>();
+
+		synchronized (lock) {
+			for (Map.Entry<Object, List<Class<?>>> registration : registrations.entrySet()) {
+				for (Class<?> listened : registration.getValue()) {
+					if (listened.isAssignableFrom(eventType)) {
+						listeners.add(registration.getKey());
+						break;
+					}
+				}
+			}
+		}
+
+		return listeners;
+	}
+
+	@Override
+	public void register(Object target) {
+		delegate.register(target);
+		track(target, findSubscribedTypes(target));
+	}
+
+	@Override
+	public <T extends Event> void addListener(Consumer<T> consumer) {
+		delegate.addListener(consumer);
+		track(consumer, resolveType(consumer));
+	}
+
+	@Override
+	public <T extends Event> void addListener(EventPriority priority, Consumer<T> consumer) {
+		delegate.addListener(priority, consumer);
+		track(consumer, resolveType(consumer));
+	}
+
+	@Override
+	public <T extends Event> void addListener(EventPriority priority, boolean receiveCancelled, Consumer<T> consumer) {
+		delegate.addListener(priority, receiveCancelled, consumer);
+		track(consumer, resolveType(consumer));
+	}
+
+	@Override
+	public <T extends Event> void addListener(EventPriority priority, boolean receiveCancelled, Class<T> eventType, Consumer<T> consumer) {
+		delegate.addListener(priority, receiveCancelled, eventType, consumer);
+		track(consumer, Collections.singletonList(eventType));
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, Consumer<T> consumer) {
+		delegate.addGenericListener(genericClassFilter, consumer);
+		track(consumer, resolveType(consumer));
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, EventPriority priority, Consumer<T> consumer) {
+		delegate.addGenericListener(genericClassFilter, priority, consumer);
+		track(consumer, resolveType(consumer));
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, EventPriority priority, boolean receiveCancelled, Consumer<T> consumer) {
+		delegate.addGenericListener(genericClassFilter, priority, receiveCancelled, consumer);
+		track(consumer, resolveType(consumer));
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, EventPriority priority, boolean receiveCancelled, Class<T> eventType, Consumer<T> consumer) {
+		delegate.addGenericListener(genericClassFilter, priority, receiveCancelled, eventType, consumer);
+		track(consumer, Collections.singletonList(eventType));
+	}
+
+	@Override
+	public void unregister(Object object) {
+		delegate.unregister(object);
+
+		synchronized (lock) {
+			List<Class<?>> types = registrations.remove(object);
+
+			if (types == null) {
+				return;
+			}
+
+			for (Class<?> type : types) {
+				listenerCounts.computeIfPresent(type, (key, count) -> count == 1 ? null : count - 1);
+			}
+
+			refreshPresences();
+		}
+	}
+
+	@Override
+	public boolean post(Event event) {
+		return delegate.post(event);
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public void start() {
+		delegate.start();
+	}
+
+	private void track(Object target, List<Class<?>> types) {
+		synchronized (lock) {
+			List<Class<?>> existing = registrations.get(target);
+
+			if (existing == null) {
+				existing = new ArrayList<>();
+				registrations.put(target, existing);
+			}
+
+			for (Class<?> type : types) {
+				existing.add(type);
+				listenerCounts.merge(type, 1, Integer::sum);
+			}
+
+			refreshPresences();
+		}
+	}
+
+	private void refreshPresences() {
+		for (ListenerPresence presence : presences.values()) {
+			presence.setPresent(computePresence(presence.getEventType()));
+		}
+	}
+
+	private boolean computePresence(Class<? extends Event> eventType) {
+		for (Class<?> listened : listenerCounts.keySet()) {
+			if (listened.isAssignableFrom(eventType)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static List<Class<?>> resolveType(Consumer<?> consumer) {
+		Class<?> type = TypeResolver.resolveRawArgument(Consumer.class, consumer.getClass());
+
+		if (type == TypeResolver.Unknown.class) {
+			type = Event.class;
+		}
+
+		return Collections.singletonList(type);
+	}
+
+	private static List<Class<?>> findSubscribedTypes(Object target) {
+		List<Class<?>> types = new ArrayList<>();
+
+		for (Method method : SubscriberMethods.find(target)) {
+			types.add(method.getParameterTypes()[0]);
+		}
+
+		return types;
+	}
+}
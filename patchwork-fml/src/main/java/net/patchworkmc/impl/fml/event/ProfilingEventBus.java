@@ -0,0 +1,324 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import net.jodah.typetools.TypeResolver;
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.GenericEvent;
+import net.minecraftforge.eventbus.api.IEventBus;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.ModLoadingContext;
+
+import net.patchworkmc.impl.fml.ThreadMetrics;
+
+/**
+ * An {@link IEventBus} that measures every post and every listener call, attributing listeners to the mod that
+ * was active in the {@link ModLoadingContext} when they were registered.
+ *
+ * <p>To be able to time each listener individually, {@link SubscribeEvent} methods are registered on the
+ * underlying bus as individual listeners instead of through {@link IEventBus#register(Object)}. This is only
+ * used when {@code -Dpatchwork.eventbus.profiling=true} is set, so that the normal bus pays nothing for it.</p>
+ */
+public class ProfilingEventBus implements IEventBus {
+	private final IEventBus delegate;
+	private final Map<Object, List<Consumer<? extends Event>>> registrations = new HashMap<>();
+
+	public ProfilingEventBus(IEventBus delegate) {
+		this.delegate = delegate;
+	}
+
+	public static IEventBus wrapIfEnabled(IEventBus bus) {
+		return EventProfiles.ENABLED ? new ProfilingEventBus(bus) : bus;
+	}
+
+	@Override
+	public void register(Object target) {
+		synchronized (registrations) {
+			if (registrations.containsKey(target)) {
+				return;
+			}
+		}
+
+		Class<?> clazz = target.getClass() == Class.class ? (Class<?>) target : target.getClass();
+		List<Method> methods = SubscriberMethods.find(target);
+		List<Consumer<? extends Event>> listeners = new ArrayList<>();
+
+		for (Method method : methods) {
+			Class<?> eventType = method.getParameterTypes()[0];
+
+			// The bus takes raw generic event subscribers as listening to every type argument, which can't be
+			// expressed through addGenericListener, so such targets are registered as usual and left unprofiled
+			if (GenericEvent.class.isAssignableFrom(eventType) && genericFilter(method.getGenericParameterTypes()[0]) == null) {
+				delegate.register(target);
+				return;
+			}
+		}
+
+		for (Method method : methods) {
+			SubscribeEvent subscription = SubscriberMethods.getAnnotation(clazz, method);
+			Class<?> eventType = method.getParameterTypes()[0];
+
+			if (!Event.class.isAssignableFrom(eventType)) {
+				throw new IllegalArgumentException("Method " + method + " has @SubscribeEvent annotation, but takes an argument that is not an Event " + eventType);
+			}
+
+			ProfiledListener<Event> listener = new ProfiledListener<>(owner(), new MethodListener(target, method));
+			Class<?> filter = GenericEvent.class.isAssignableFrom(eventType) ? genericFilter(method.getGenericParameterTypes()[0]) : null;
+
+			if (filter != null) {
+				addGeneric(filter, subscription.priority(), subscription.receiveCanceled(), eventType, listener);
+			} else {
+				add(subscription.priority(), subscription.receiveCanceled(), eventType, listener);
+			}
+
+			listeners.add(listener);
+		}
+
+		synchronized (registrations) {
+			registrations.put(target, listeners);
+		}
+	}
+
+	@Override
+	public <T extends Event> void addListener(Consumer<T> consumer) {
+		addListener(EventPriority.NORMAL, consumer);
+	}
+
+	@Override
+	public <T extends Event> void addListener(EventPriority priority, Consumer<T> consumer) {
+		addListener(priority, false, consumer);
+	}
+
+	@Override
+	public <T extends Event> void addListener(EventPriority priority, boolean receiveCancelled, Consumer<T> consumer) {
+		addListener(priority, receiveCancelled, resolveType(consumer), consumer);
+	}
+
+	@Override
+	public <T extends Event> void addListener(EventPriority priority, boolean receiveCancelled, Class<T> eventType, Consumer<T> consumer) {
+		ProfiledListener<T> listener = new ProfiledListener<>(owner(), consumer);
+		delegate.addListener(priority, receiveCancelled, eventType, listener);
+		remember(consumer, listener);
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, Consumer<T> consumer) {
+		addGenericListener(genericClassFilter, EventPriority.NORMAL, consumer);
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, EventPriority priority, Consumer<T> consumer) {
+		addGenericListener(genericClassFilter, priority, false, consumer);
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, EventPriority priority, boolean receiveCancelled, Consumer<T> consumer) {
+		addGenericListener(genericClassFilter, priority, receiveCancelled, resolveType(consumer), consumer);
+	}
+
+	@Override
+	public <T extends GenericEvent<? extends F>, F> void addGenericListener(Class<F> genericClassFilter, EventPriority priority, boolean receiveCancelled, Class<T> eventType, Consumer<T> consumer) {
+		ProfiledListener<T> listener = new ProfiledListener<>(owner(), consumer);
+		delegate.addGenericListener(genericClassFilter, priority, receiveCancelled, eventType, listener);
+		remember(consumer, listener);
+	}
+
+	@Override
+	public void unregister(Object object) {
+		List<Consumer<? extends Event>> listeners;
+
+		synchronized (registrations) {
+			listeners = registrations.remove(object);
+		}
+
+		if (listeners == null) {
+			delegate.unregister(object);
+			return;
+		}
+
+		for (Consumer<? extends Event> listener : listeners) {
+			delegate.unregister(listener);
+		}
+	}
+
+	@Override
+	public boolean post(Event event) {
+		Object jfr = JfrSupport.AVAILABLE ? JfrEventDispatch.start() : null;
+		long allocated = ThreadMetrics.allocatedBytes();
+		long start = System.nanoTime();
+
+		try {
+			return delegate.post(event);
+		} finally {
+			long nanos = System.nanoTime() - start;
+			allocated = ThreadMetrics.allocatedBytes() - allocated;
+
+			EventProfiles.getDispatchStats(event.getClass()).record(nanos, allocated);
+
+			if (jfr != null) {
+				JfrEventDispatch.finish(jfr, event.getClass(), allocated);
+			}
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		delegate.shutdown();
+	}
+
+	@Override
+	public void start() {
+		delegate.start();
+	}
+
+	private void remember(Object target, Consumer<? extends Event> listener) {
+		synchronized (registrations) {
+			registrations.computeIfAbsent(target, key -> new ArrayList<>()).add(listener);
+		}
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void add(EventPriority priority, boolean receiveCancelled, Class<?> eventType, Consumer<? extends Event> listener) {
+		delegate.addListener(priority, receiveCancelled, (Class) eventType, (Consumer) listener);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private void addGeneric(Class<?> filter, EventPriority priority, boolean receiveCancelled, Class<?> eventType, Consumer<? extends Event> listener) {
+		delegate.addGenericListener((Class) filter, priority, receiveCancelled, (Class) eventType, (Consumer) listener);
+	}
+
+	private static String owner() {
+		return ModLoadingContext.get().getActiveNamespace();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Class<T> resolveType(Consumer<?> consumer) {
+		Class<?> type = TypeResolver.resolveRawArgument(Consumer.class, consumer.getClass());
+
+		if (type == TypeResolver.Unknown.class) {
+			throw new IllegalStateException("Failed to resolve consumer event type: " + consumer);
+		}
+
+		return (Class<T>) type;
+	}
+
+	private static Class<?> genericFilter(Type parameter) {
+		if (!(parameter instanceof ParameterizedType)) {
+			return null;
+		}
+
+		Type filter = ((ParameterizedType) parameter).getActualTypeArguments()[0];
+
+		if (filter instanceof ParameterizedType) {
+			filter = ((ParameterizedType) filter).getRawType();
+		}
+
+		return filter instanceof Class ? (Class<?>) filter : null;
+	}
+
+	private static final class ProfiledListener<T extends Event> implements Consumer<T> {
+		private final String owner;
+		private final Consumer<T> listener;
+		private volatile DispatchStats lastStats;
+
+		private ProfiledListener(String owner, Consumer<T> listener) {
+			this.owner = owner;
+			this.listener = listener;
+		}
+
+		@Override
+		public void accept(T event) {
+			Object jfr = JfrSupport.AVAILABLE ? JfrListenerInvocation.start() : null;
+			long allocated = ThreadMetrics.allocatedBytes();
+			long start = System.nanoTime();
+
+			try {
+				listener.accept(event);
+			} finally {
+				long nanos = System.nanoTime() - start;
+				allocated = ThreadMetrics.allocatedBytes() - allocated;
+
+				stats(event.getClass()).record(nanos, allocated);
+
+				if (jfr != null) {
+					JfrListenerInvocation.finish(jfr, event.getClass(), owner, allocated);
+				}
+			}
+		}
+
+		// Most listeners only ever see one event type, so avoid the map lookup in the common case
+		private DispatchStats stats(Class<?> eventType) {
+			DispatchStats stats = lastStats;
+
+			if (stats == null || stats.getEventType() != eventType) {
+				stats = EventProfiles.getListenerStats(owner, eventType);
+				lastStats = stats;
+			}
+
+			return stats;
+		}
+	}
+
+	private static final class MethodListener implements Consumer<Event> {
+		private static final MethodType LISTENER_TYPE = MethodType.methodType(void.class, Event.class);
+
+		private final MethodHandle handle;
+
+		private MethodListener(Object target, Method method) {
+			method.setAccessible(true);
+
+			try {
+				MethodHandle handle = MethodHandles.lookup().unreflect(method);
+
+				if (target.getClass() != Class.class) {
+					handle = handle.bindTo(target);
+				}
+
+				this.handle = handle.asType(LISTENER_TYPE);
+			} catch (IllegalAccessException e) {
+				throw new IllegalArgumentException("Unable to access event listener " + method, e);
+			}
+		}
+
+		@Override
+		public void accept(Event event) {
+			try {
+				handle.invokeExact(event);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException(t);
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.fml.event;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+
+/**
+ * Finds the {@link SubscribeEvent} methods of a listener the same way the EventBus does: static methods when a
+ * class is registered, instance methods otherwise, honouring annotations on methods that a subscriber overrides.
+ */
+final class SubscriberMethods {
+	private SubscriberMethods() {
+	}
+
+	static List<Method> find(Object target) {
+		boolean statics = target.getClass() == Class.class;
+		Class<?> clazz = statics ? (Class<?>) target : target.getClass();
+		List<Method> methods = new ArrayList<>();
+
+		for (Method method : clazz.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers()) != statics || method.getParameterCount() != 1) {
+				continue;
+			}
+
+			if (getAnnotation(clazz, method) != null) {
+				methods.add(method);
+			}
+		}
+
+		return methods;
+	}
+
+	static SubscribeEvent getAnnotation(Class<?> clazz, Method method) {
+		SubscribeEvent annotation = method.getAnnotation(SubscribeEvent.class);
+
+		if (annotation != null || Modifier.isStatic(method.getModifiers())) {
+			return annotation;
+		}
+
+		return getAnnotation(clazz, method.getName(), method.getParameterTypes());
+	}
+
+	private static SubscribeEvent getAnnotation(Class<?> clazz, String name, Class<?>[] parameters) {
+		if (clazz == null) {
+			return null;
+		}
+
+		try {
+			SubscribeEvent annotation = clazz.getDeclaredMethod(name, parameters).getAnnotation(SubscribeEvent.class);
+
+			if (annotation != null) {
+				return annotation;
+			}
+		} catch (NoSuchMethodException e) {
+			// Not declared here, keep looking through the supertypes
+		}
+
+		for (Class<?> parent : clazz.getInterfaces()) {
+			SubscribeEvent annotation = getAnnotation(parent, name, parameters);
+
+			if (annotation != null) {
+				return annotation;
+			}
+		}
+
+		return getAnnotation(clazz.getSuperclass(), name, parameters);
+	}
+}
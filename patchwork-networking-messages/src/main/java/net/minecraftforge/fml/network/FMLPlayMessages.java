@@ -22,7 +22,7 @@ package net.minecraftforge.fml.network;
 import java.util.UUID;
 import java.util.function.Supplier;
 
-import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
 import net.minecraftforge.fml.LogicalSide;
 import net.minecraftforge.fml.common.registry.IEntityAdditionalSpawnData;
 
@@ -85,6 +85,26 @@ public class FMLPlayMessages {
 			this.buf = null;
 		}
 
+		// Note: not present on Forge, used by the compact encoding
+		public SpawnEntity(int typeId, int entityId, UUID uuid, double posX, double posY, double posZ, byte pitch, byte yaw, byte headYaw, int velX, int velY, int velZ, PacketByteBuf buf) {
+			this.entity = null;
+
+			this.typeId = typeId;
+			this.entityId = entityId;
+			this.uuid = uuid;
+			this.posX = posX;
+			this.posY = posY;
+			this.posZ = posZ;
+			this.pitch = pitch;
+			this.yaw = yaw;
+			this.headYaw = headYaw;
+			this.velX = velX;
+			this.velY = velY;
+			this.velZ = velZ;
+
+			this.buf = buf;
+		}
+
 		private SpawnEntity(PacketByteBuf buf) {
 			this.entity = null;
 
@@ -229,6 +249,11 @@ public class FMLPlayMessages {
 	}
 
 	public static class OpenContainer {
+		/**
+		 * The maximum size of the additional data, in bytes.
+		 */
+		public static final int MAX_ADDITIONAL_DATA = 32600;
+
 		private final int id;
 		private final int windowId;
 		private final Text name;
@@ -247,30 +272,52 @@ public class FMLPlayMessages {
 		}
 
 		public static void encode(OpenContainer msg, PacketByteBuf buf) {
+			int length = msg.additionalData.readableBytes();
+
 			buf.writeVarInt(msg.id);
 			buf.writeVarInt(msg.windowId);
 			buf.writeText(msg.name);
-			buf.writeByteArray(msg.additionalData.readByteArray());
+			buf.writeVarInt(length);
+			buf.writeBytes(msg.additionalData, msg.additionalData.readerIndex(), length);
 		}
 
+		/**
+		 * Decodes the message without copying the additional data, which is a retained slice of the buffer that must be
+		 * released once it has been read.
+		 */
 		public static OpenContainer decode(PacketByteBuf buf) {
-			return new OpenContainer(buf.readVarInt(), buf.readVarInt(), buf.readText(), new PacketByteBuf(Unpooled.wrappedBuffer(buf.readByteArray(32600))));
+			int id = buf.readVarInt();
+			int windowId = buf.readVarInt();
+			Text name = buf.readText();
+			int length = buf.readVarInt();
+
+			if (length > MAX_ADDITIONAL_DATA) {
+				throw new DecoderException("ByteArray with size " + length + " is bigger than allowed " + MAX_ADDITIONAL_DATA);
+			}
+
+			return new OpenContainer(id, windowId, name, new PacketByteBuf(buf.readRetainedSlice(length)));
 		}
 
 		public static void handle(OpenContainer msg, PacketContext context) {
 			// TODO: IForgeContainerType
 
+			msg.getAdditionalData().release();
+
 			throw new UnsupportedOperationException("Cannot yet handle custom OpenContainer packets");
 
 			/*PatchworkNetworking.enqueueWork(context.getTaskQueue(), () -> {
-				Screens.getScreenFactory(msg.getType(), MinecraftClient.getInstance(), msg.getWindowId(), msg.getName())
-						.ifPresent(f -> {
-							Container c = msg.getType().create(msg.getWindowId(), MinecraftClient.getInstance().player.inventory, msg.getAdditionalData());
-							@SuppressWarnings("unchecked")
-							Screen s = ((Screens.Provider<Container, ?>) f).create(c, MinecraftClient.getInstance().player.inventory, msg.getName());
-							MinecraftClient.getInstance().player.container = ((ContainerProvider<?>) s).getContainer();
-							MinecraftClient.getInstance().openScreen(s);
-						});
+				try {
+					Screens.getScreenFactory(msg.getType(), MinecraftClient.getInstance(), msg.getWindowId(), msg.getName())
+							.ifPresent(f -> {
+								Container c = msg.getType().create(msg.getWindowId(), MinecraftClient.getInstance().player.inventory, msg.getAdditionalData());
+								@SuppressWarnings("unchecked")
+								Screen s = ((Screens.Provider<Container, ?>) f).create(c, MinecraftClient.getInstance().player.inventory, msg.getName());
+								MinecraftClient.getInstance().player.container = ((ContainerProvider<?>) s).getContainer();
+								MinecraftClient.getInstance().openScreen(s);
+							});
+				} finally {
+					msg.getAdditionalData().release();
+				}
 			});*/
 		}
 
@@ -0,0 +1,387 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import net.minecraftforge.fml.common.registry.IEntityAdditionalSpawnData;
+import net.minecraftforge.fml.network.FMLPlayMessages;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.network.Packet;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.PacketByteBuf;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+
+import net.fabricmc.fabric.api.network.ClientSidePacketRegistry;
+import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
+
+/**
+ * A compact encoding of {@link FMLPlayMessages.SpawnEntity} for clients running Patchwork.
+ *
+ * <p>Spawns are sent as a list relative to a chunk. Positions use the same 1/4096 block fixed point as the entity
+ * tracker, with the horizontal coordinates split into a chunk offset and a position within the chunk. The UUID is left
+ * out when it is the nil UUID, and the velocity and head yaw when they are zero or equal to the yaw. Entities that start
+ * being tracked while a chunk is sent to a player are spawned with a single payload relative to that chunk, which is
+ * sent before any other packet queued during that time so that they still follow the spawn of their entity.</p>
+ *
+ * <p>Clients advertise support by registering {@link #CHANNEL}. Other clients always receive the Forge encoding.</p>
+ */
+public final class CompactEntitySpawns {
+	/**
+	 * Send compact spawns to clients that support them. Reading them is always supported.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.networking.compactSpawns");
+	public static final Identifier CHANNEL = new Identifier("patchwork", "compact_spawns");
+	private static final Logger LOGGER = LogManager.getLogger("patchwork-networking");
+	private static final NetworkChannelVersion VERSION = new NetworkChannelVersion("1", version -> true, version -> true);
+	private static final UUID NIL_UUID = new UUID(0L, 0L);
+	private static final double FIXED_POINT_SCALE = 4096.0D;
+	private static final int CHUNK_SHIFT = 16;
+	private static final int FLAG_UUID = 1;
+	private static final int FLAG_VELOCITY = 2;
+	private static final int FLAG_HEAD_YAW = 4;
+	private static final ThreadLocal<ServerPlayerEntity> RECIPIENT = new ThreadLocal<>();
+	private static final ThreadLocal<SpawnWindow> WINDOW = new ThreadLocal<>();
+
+	private CompactEntitySpawns() {
+		// NO-OP
+	}
+
+	static void register() {
+		PatchworkNetworking.getVersionManager().createChannel(CHANNEL, VERSION);
+
+		// Nothing is ever sent on this channel, registering it only advertises support to the server
+		ClientSidePacketRegistry.INSTANCE.register(CHANNEL, (context, buf) -> LOGGER.warn("Received an unexpected payload on {}", CHANNEL));
+	}
+
+	/**
+	 * Sets the player that packets created by {@link net.minecraft.entity.Entity#createSpawnPacket()} will be sent to.
+	 */
+	public static void setRecipient(@Nullable ServerPlayerEntity player) {
+		if (player == null) {
+			RECIPIENT.remove();
+		} else {
+			RECIPIENT.set(player);
+		}
+	}
+
+	/**
+	 * Starts collecting the entity spawns sent to a player into a single payload relative to a chunk.
+	 */
+	public static void beginChunk(ServerPlayerEntity player, ChunkPos pos) {
+		if (!ENABLED || !ServerSidePacketRegistry.INSTANCE.canPlayerReceive(player, CHANNEL)) {
+			return;
+		}
+
+		SpawnWindow previous = WINDOW.get();
+
+		if (previous != null) {
+			// Left open by an exception, send what it held before starting over
+			endChunk(previous.player);
+		}
+
+		WINDOW.set(new SpawnWindow(player, pos));
+	}
+
+	/**
+	 * Sends the entity spawns collected since {@link #beginChunk}, followed by the packets sent after the first of them.
+	 */
+	public static void endChunk(ServerPlayerEntity player) {
+		SpawnWindow window = WINDOW.get();
+
+		if (window == null || window.player != player) {
+			return;
+		}
+
+		WINDOW.remove();
+
+		// Created during the window but not sent yet, these may still be sent later on their own
+		for (PendingSpawn pending : window.pending.values()) {
+			encodeSingle(pending.spawn, pending.payload);
+		}
+
+		if (window.spawns.isEmpty()) {
+			return;
+		}
+
+		player.networkHandler.sendPacket(toPacket(window.spawns, window.pos.x, window.pos.z));
+
+		for (HeldPacket held : window.held) {
+			player.networkHandler.sendPacket(held.packet, held.listener);
+		}
+	}
+
+	/**
+	 * @return Whether the packet was taken to be sent later by {@link #endChunk}
+	 */
+	public static boolean hold(ServerPlayerEntity player, Packet<?> packet, @Nullable GenericFutureListener<? extends Future<? super Void>> listener) {
+		SpawnWindow window = WINDOW.get();
+
+		if (window == null || window.player != player) {
+			return false;
+		}
+
+		PendingSpawn pending = window.pending.remove(packet);
+
+		if (pending != null) {
+			window.spawns.add(pending.spawn);
+
+			return true;
+		} else if (!window.spawns.isEmpty()) {
+			window.held.add(new HeldPacket(packet, listener));
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The compact spawn packet for the player currently starting to track the entity, or null if the Forge
+	 * encoding should be used
+	 */
+	@Nullable
+	static Packet<?> createSpawnPacket(FMLPlayMessages.SpawnEntity message) {
+		ServerPlayerEntity recipient = RECIPIENT.get();
+
+		if (!ENABLED || recipient == null || !ServerSidePacketRegistry.INSTANCE.canPlayerReceive(recipient, CHANNEL)) {
+			return null;
+		}
+
+		Spawn spawn = new Spawn(message);
+		SpawnWindow window = WINDOW.get();
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+
+		if (window != null && window.player == recipient) {
+			// Most likely taken by hold() into the payload of the window, so the payload of this packet is left empty
+			// until endChunk() finds out it is sent on its own. The packet keeps a reference to the buffer.
+			Packet<?> packet = ServerSidePacketRegistry.INSTANCE.toPacket(PatchworkPlayNetworkingMessages.IDENTIFIER, buf);
+			window.pending.put(packet, new PendingSpawn(spawn, buf));
+
+			return packet;
+		}
+
+		encodeSingle(spawn, buf);
+
+		return ServerSidePacketRegistry.INSTANCE.toPacket(PatchworkPlayNetworkingMessages.IDENTIFIER, buf);
+	}
+
+	private static void encodeSingle(Spawn spawn, PacketByteBuf buf) {
+		encode(Collections.singletonList(spawn), toChunk(toFixedPoint(spawn.message.getPosX())), toChunk(toFixedPoint(spawn.message.getPosZ())), buf);
+	}
+
+	private static Packet<?> toPacket(List<Spawn> spawns, int baseChunkX, int baseChunkZ) {
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		encode(spawns, baseChunkX, baseChunkZ, buf);
+
+		return ServerSidePacketRegistry.INSTANCE.toPacket(PatchworkPlayNetworkingMessages.IDENTIFIER, buf);
+	}
+
+	/**
+	 * Encodes messages that carry their own additional data, like the ones {@link #read} creates, as a single payload
+	 * relative to a chunk.
+	 */
+	static void encodeMessages(List<FMLPlayMessages.SpawnEntity> messages, int baseChunkX, int baseChunkZ, PacketByteBuf buf) {
+		List<Spawn> spawns = new ArrayList<>(messages.size());
+
+		for (FMLPlayMessages.SpawnEntity message : messages) {
+			spawns.add(new Spawn(message, message.getAdditionalData()));
+		}
+
+		encode(spawns, baseChunkX, baseChunkZ, buf);
+	}
+
+	private static void encode(List<Spawn> spawns, int baseChunkX, int baseChunkZ, PacketByteBuf buf) {
+		buf.writeByte(PatchworkPlayNetworkingMessages.SPAWN_ENTITIES);
+		buf.writeVarLong(toZigZag(baseChunkX));
+		buf.writeVarLong(toZigZag(baseChunkZ));
+		buf.writeVarInt(spawns.size());
+
+		for (Spawn spawn : spawns) {
+			write(spawn, baseChunkX, baseChunkZ, buf);
+		}
+	}
+
+	private static void write(Spawn spawn, int baseChunkX, int baseChunkZ, PacketByteBuf buf) {
+		FMLPlayMessages.SpawnEntity message = spawn.message;
+		boolean hasUuid = !NIL_UUID.equals(message.getUuid());
+		boolean hasVelocity = message.getVelX() != 0 || message.getVelY() != 0 || message.getVelZ() != 0;
+		boolean hasHeadYaw = message.getHeadYaw() != message.getYaw();
+		int flags = (hasUuid ? FLAG_UUID : 0) | (hasVelocity ? FLAG_VELOCITY : 0) | (hasHeadYaw ? FLAG_HEAD_YAW : 0);
+
+		buf.writeVarInt(message.getTypeId());
+		buf.writeVarInt(message.getEntityId());
+		buf.writeByte(flags);
+		writeHorizontal(toFixedPoint(message.getPosX()), baseChunkX, buf);
+		buf.writeVarLong(toZigZag(toFixedPoint(message.getPosY())));
+		writeHorizontal(toFixedPoint(message.getPosZ()), baseChunkZ, buf);
+		buf.writeByte(message.getPitch());
+		buf.writeByte(message.getYaw());
+
+		if (hasHeadYaw) {
+			buf.writeByte(message.getHeadYaw());
+		}
+
+		if (hasUuid) {
+			buf.writeUuid(message.getUuid());
+		}
+
+		if (hasVelocity) {
+			buf.writeShort(message.getVelX());
+			buf.writeShort(message.getVelY());
+			buf.writeShort(message.getVelZ());
+		}
+
+		buf.writeVarInt(spawn.additionalData.readableBytes());
+		buf.writeBytes(spawn.additionalData, spawn.additionalData.readerIndex(), spawn.additionalData.readableBytes());
+	}
+
+	/**
+	 * Reads a payload sent with the message id {@link PatchworkPlayNetworkingMessages#SPAWN_ENTITIES}.
+	 */
+	static void read(PacketByteBuf buf, Consumer<FMLPlayMessages.SpawnEntity> handler) {
+		long baseChunkX = fromZigZag(buf.readVarLong());
+		long baseChunkZ = fromZigZag(buf.readVarLong());
+		int count = buf.readVarInt();
+
+		for (int i = 0; i < count; i++) {
+			handler.accept(read(baseChunkX, baseChunkZ, buf));
+		}
+	}
+
+	private static FMLPlayMessages.SpawnEntity read(long baseChunkX, long baseChunkZ, PacketByteBuf buf) {
+		int typeId = buf.readVarInt();
+		int entityId = buf.readVarInt();
+		int flags = buf.readUnsignedByte();
+		double posX = readHorizontal(baseChunkX, buf);
+		double posY = fromZigZag(buf.readVarLong()) / FIXED_POINT_SCALE;
+		double posZ = readHorizontal(baseChunkZ, buf);
+		byte pitch = buf.readByte();
+		byte yaw = buf.readByte();
+		byte headYaw = (flags & FLAG_HEAD_YAW) != 0 ? buf.readByte() : yaw;
+		UUID uuid = (flags & FLAG_UUID) != 0 ? buf.readUuid() : NIL_UUID;
+		int velX = 0;
+		int velY = 0;
+		int velZ = 0;
+
+		if ((flags & FLAG_VELOCITY) != 0) {
+			velX = buf.readShort();
+			velY = buf.readShort();
+			velZ = buf.readShort();
+		}
+
+		PacketByteBuf additionalData = new PacketByteBuf(buf.readSlice(buf.readVarInt()));
+
+		return new FMLPlayMessages.SpawnEntity(typeId, entityId, uuid, posX, posY, posZ, pitch, yaw, headYaw, velX, velY, velZ, additionalData);
+	}
+
+	private static void writeHorizontal(long fixed, int baseChunk, PacketByteBuf buf) {
+		buf.writeVarLong(toZigZag((fixed >> CHUNK_SHIFT) - baseChunk));
+		buf.writeShort((int) fixed);
+	}
+
+	private static double readHorizontal(long baseChunk, PacketByteBuf buf) {
+		long chunk = baseChunk + fromZigZag(buf.readVarLong());
+
+		return ((chunk << CHUNK_SHIFT) | buf.readUnsignedShort()) / FIXED_POINT_SCALE;
+	}
+
+	private static long toFixedPoint(double coordinate) {
+		return MathHelper.lfloor(coordinate * FIXED_POINT_SCALE);
+	}
+
+	private static int toChunk(long fixed) {
+		return (int) (fixed >> CHUNK_SHIFT);
+	}
+
+	private static long toZigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long fromZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static class Spawn {
+		private final FMLPlayMessages.SpawnEntity message;
+		private final PacketByteBuf additionalData;
+
+		private Spawn(FMLPlayMessages.SpawnEntity message) {
+			this(message, new PacketByteBuf(Unpooled.buffer()));
+
+			if (message.getEntity() instanceof IEntityAdditionalSpawnData) {
+				((IEntityAdditionalSpawnData) message.getEntity()).writeSpawnData(additionalData);
+			}
+		}
+
+		private Spawn(FMLPlayMessages.SpawnEntity message, PacketByteBuf additionalData) {
+			this.message = message;
+			this.additionalData = additionalData;
+		}
+	}
+
+	private static class PendingSpawn {
+		private final Spawn spawn;
+		private final PacketByteBuf payload;
+
+		private PendingSpawn(Spawn spawn, PacketByteBuf payload) {
+			this.spawn = spawn;
+			this.payload = payload;
+		}
+	}
+
+	private static class HeldPacket {
+		private final Packet<?> packet;
+		private final GenericFutureListener<? extends Future<? super Void>> listener;
+
+		private HeldPacket(Packet<?> packet, @Nullable GenericFutureListener<? extends Future<? super Void>> listener) {
+			this.packet = packet;
+			this.listener = listener;
+		}
+	}
+
+	private static class SpawnWindow {
+		private final ServerPlayerEntity player;
+		private final ChunkPos pos;
+		private final Map<Packet<?>, PendingSpawn> pending = new IdentityHashMap<>();
+		private final List<Spawn> spawns = new ArrayList<>();
+		private final List<HeldPacket> held = new ArrayList<>();
+
+		private SpawnWindow(ServerPlayerEntity player, ChunkPos pos) {
+			this.player = player;
+			this.pos = pos;
+		}
+	}
+}
@@ -42,15 +42,17 @@ import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
 
 public class PatchworkPlayNetworkingMessages implements ModInitializer, MessageFactory {
 	private static final Logger LOGGER = LogManager.getLogger("patchwork-networking");
-	private static final Identifier IDENTIFIER = new Identifier("fml", "play");
+	static final Identifier IDENTIFIER = new Identifier("fml", "play");
 	private static final NetworkChannelVersion VERSION = new NetworkChannelVersion("FML2", version -> true, version -> true);
 	private static final short SPAWN_ENTITY = 0;
 	private static final short OPEN_CONTAINER = 1;
+	static final short SPAWN_ENTITIES = 2;
 
 	@Override
 	public void onInitialize() {
 		PatchworkNetworking.getVersionManager().createChannel(IDENTIFIER, VERSION);
 		PatchworkNetworking.setFactory(this);
+		CompactEntitySpawns.register();
 
 		// TODO: Move to client initializer
 		ClientSidePacketRegistry.INSTANCE.register(IDENTIFIER, (context, buf) -> {
@@ -62,6 +64,8 @@ public class PatchworkPlayNetworkingMessages implements ModInitializer, MessageF
 			} else if (id == OPEN_CONTAINER) {
 				FMLPlayMessages.OpenContainer open = FMLPlayMessages.OpenContainer.decode(buf);
 				FMLPlayMessages.OpenContainer.handle(open, context);
+			} else if (id == SPAWN_ENTITIES) {
+				CompactEntitySpawns.read(buf, spawn -> FMLPlayMessages.SpawnEntity.handle(spawn, context));
 			} else {
 				LOGGER.warn("Received an unknown fml:play message with an id of {} and a payload of {} bytes", id, buf.readableBytes());
 			}
@@ -79,6 +83,12 @@ public class PatchworkPlayNetworkingMessages implements ModInitializer, MessageF
 	@Override
 	public Packet<?> getEntitySpawningPacket(Entity entity) {
 		FMLPlayMessages.SpawnEntity message = new FMLPlayMessages.SpawnEntity(entity);
+		Packet<?> compact = CompactEntitySpawns.createSpawnPacket(message);
+
+		if (compact != null) {
+			return compact;
+		}
+
 		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
 
 		buf.writeByte(SPAWN_ENTITY);
@@ -104,18 +114,14 @@ public class PatchworkPlayNetworkingMessages implements ModInitializer, MessageF
 		// reset to beginning in case modders read for whatever reason
 		extraData.readerIndex(0);
 
-		PacketByteBuf output = new PacketByteBuf(Unpooled.buffer());
-		output.writeVarInt(extraData.readableBytes());
-		output.writeBytes(extraData);
-
-		if (output.readableBytes() > 32600 || output.readableBytes() < 1) {
-			throw new IllegalArgumentException("Invalid PacketByteBuf for openGui, found " + output.readableBytes() + " bytes");
+		if (extraData.readableBytes() > FMLPlayMessages.OpenContainer.MAX_ADDITIONAL_DATA) {
+			throw new IllegalArgumentException("Invalid PacketByteBuf for openGui, found " + extraData.readableBytes() + " bytes");
 		}
 
 		Container c = factory.createMenu(openContainerId, player.inventory, player);
 		ContainerType<?> type = c.getType();
 
-		FMLPlayMessages.OpenContainer msg = new FMLPlayMessages.OpenContainer(type, openContainerId, factory.getDisplayName(), output);
+		FMLPlayMessages.OpenContainer msg = new FMLPlayMessages.OpenContainer(type, openContainerId, factory.getDisplayName(), extraData);
 		Packet<?> packet = PatchworkPlayNetworkingMessages.getOpenContainerPacket(msg);
 
 		player.networkHandler.sendPacket(packet);
@@ -0,0 +1,142 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import net.minecraftforge.fml.network.FMLPlayMessages;
+import org.junit.Test;
+
+import net.minecraft.util.PacketByteBuf;
+
+public class CompactEntitySpawnsTest {
+	// Positions are sent in 1/4096 of a block, these round trip exactly
+	private static final double FIXED_POINT_SCALE = 4096.0D;
+	private static final UUID NIL_UUID = new UUID(0L, 0L);
+	// The edge of the world border, in blocks
+	private static final int WORLD_EDGE = 30_000_000;
+
+	@Test
+	public void roundTripsEveryFlagCombination() {
+		Random random = new Random(1L);
+		List<FMLPlayMessages.SpawnEntity> spawns = new ArrayList<>();
+
+		for (int flags = 0; flags < 8; flags++) {
+			boolean hasUuid = (flags & 1) != 0;
+			boolean hasVelocity = (flags & 2) != 0;
+			boolean hasHeadYaw = (flags & 4) != 0;
+			byte yaw = (byte) random.nextInt();
+
+			spawns.add(spawn(random, 100.5D + flags, 64.0D, -20.25D - flags, hasUuid ? UUID.randomUUID() : NIL_UUID, yaw, hasHeadYaw ? (byte) (yaw + 1) : yaw, hasVelocity ? 1 + random.nextInt(1000) : 0, hasVelocity ? -random.nextInt(1000) : 0, 0));
+		}
+
+		assertRoundTrips(spawns, 6, -2);
+	}
+
+	@Test
+	public void roundTripsRandomSpawns() {
+		Random random = new Random(2L);
+
+		for (int payload = 0; payload < 100; payload++) {
+			List<FMLPlayMessages.SpawnEntity> spawns = new ArrayList<>();
+			int count = 1 + random.nextInt(20);
+			double centerX = randomCoordinate(random, WORLD_EDGE);
+			double centerZ = randomCoordinate(random, WORLD_EDGE);
+
+			for (int i = 0; i < count; i++) {
+				UUID uuid = random.nextBoolean() ? new UUID(random.nextLong(), random.nextLong()) : NIL_UUID;
+				byte yaw = (byte) random.nextInt();
+				byte headYaw = random.nextBoolean() ? yaw : (byte) random.nextInt();
+
+				spawns.add(spawn(random, centerX + randomCoordinate(random, 64), randomCoordinate(random, 512), centerZ + randomCoordinate(random, 64), uuid, yaw, headYaw, random.nextInt(65536) - 32768, random.nextInt(65536) - 32768, random.nextInt(65536) - 32768));
+			}
+
+			assertRoundTrips(spawns, (int) Math.floor(centerX / 16.0D), (int) Math.floor(centerZ / 16.0D));
+		}
+	}
+
+	@Test
+	public void roundTripsLargeChunkOffsets() {
+		Random random = new Random(3L);
+		List<FMLPlayMessages.SpawnEntity> spawns = Arrays.asList(
+				spawn(random, WORLD_EDGE - 0.5D, 255.0D, -WORLD_EDGE + 0.25D, NIL_UUID, (byte) 0, (byte) 0, 0, 0, 0),
+				spawn(random, -WORLD_EDGE, -64.0D, WORLD_EDGE, NIL_UUID, (byte) 0, (byte) 0, 0, 0, 0),
+				spawn(random, 0.0D, 0.0D, -1.0D / FIXED_POINT_SCALE, NIL_UUID, (byte) 0, (byte) 0, 0, 0, 0)
+		);
+
+		assertRoundTrips(spawns, 0, 0);
+		assertRoundTrips(spawns, WORLD_EDGE / 16, -WORLD_EDGE / 16);
+		assertRoundTrips(spawns, -WORLD_EDGE / 16, WORLD_EDGE / 16);
+	}
+
+	private static double randomCoordinate(Random random, int bound) {
+		return Math.floor((random.nextDouble() * 2.0D - 1.0D) * bound * FIXED_POINT_SCALE) / FIXED_POINT_SCALE;
+	}
+
+	private static FMLPlayMessages.SpawnEntity spawn(Random random, double x, double y, double z, UUID uuid, byte yaw, byte headYaw, int velX, int velY, int velZ) {
+		byte[] additionalData = new byte[random.nextInt(3) * random.nextInt(16)];
+		random.nextBytes(additionalData);
+
+		return new FMLPlayMessages.SpawnEntity(random.nextInt(1000), random.nextInt(Integer.MAX_VALUE), uuid, x, y, z, (byte) random.nextInt(), yaw, headYaw, velX, velY, velZ, new PacketByteBuf(Unpooled.wrappedBuffer(additionalData)));
+	}
+
+	private static void assertRoundTrips(List<FMLPlayMessages.SpawnEntity> spawns, int baseChunkX, int baseChunkZ) {
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		CompactEntitySpawns.encodeMessages(spawns, baseChunkX, baseChunkZ, buf);
+
+		assertEquals(PatchworkPlayNetworkingMessages.SPAWN_ENTITIES, buf.readUnsignedByte());
+
+		List<FMLPlayMessages.SpawnEntity> read = new ArrayList<>();
+		CompactEntitySpawns.read(buf, read::add);
+
+		assertFalse("Unread bytes after the last spawn", buf.isReadable());
+		assertEquals(spawns.size(), read.size());
+
+		for (int i = 0; i < spawns.size(); i++) {
+			assertSpawnEquals(spawns.get(i), read.get(i));
+		}
+	}
+
+	private static void assertSpawnEquals(FMLPlayMessages.SpawnEntity expected, FMLPlayMessages.SpawnEntity actual) {
+		assertEquals(expected.getTypeId(), actual.getTypeId());
+		assertEquals(expected.getEntityId(), actual.getEntityId());
+		assertEquals(expected.getUuid(), actual.getUuid());
+		assertEquals(expected.getPosX(), actual.getPosX(), 0.0D);
+		assertEquals(expected.getPosY(), actual.getPosY(), 0.0D);
+		assertEquals(expected.getPosZ(), actual.getPosZ(), 0.0D);
+		assertEquals(expected.getPitch(), actual.getPitch());
+		assertEquals(expected.getYaw(), actual.getYaw());
+		assertEquals(expected.getHeadYaw(), actual.getHeadYaw());
+		assertEquals(expected.getVelX(), actual.getVelX());
+		assertEquals(expected.getVelY(), actual.getVelY());
+		assertEquals(expected.getVelZ(), actual.getVelZ());
+		assertArrayEquals(ByteBufUtil.getBytes(expected.getAdditionalData()), ByteBufUtil.getBytes(actual.getAdditionalData()));
+	}
+}
@@ -26,6 +26,7 @@ import net.minecraft.network.ClientConnection;
 import net.minecraft.network.Packet;
 import net.minecraft.server.network.ServerPlayerEntity;
 
+import net.patchworkmc.impl.networking.InboundLimiting;
 import net.patchworkmc.impl.networking.ListenableChannel;
 import net.patchworkmc.impl.networking.MessageFactory;
 import net.patchworkmc.impl.networking.PatchworkNetworking;
@@ -38,6 +39,11 @@ public class NetworkHooks {
 			return false;
 		}
 
+		// Rejected payloads are consumed here, before anything is allocated for them
+		if (!InboundLimiting.admit(packet, target, connection)) {
+			return true;
+		}
+
 		final NetworkEvent.Context context = new NetworkEvent.Context(connection, packet.getDirection(), packet.getIndex());
 
 		target.onPacket(packet, context);
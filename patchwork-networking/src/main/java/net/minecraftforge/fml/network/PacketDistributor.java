@@ -19,11 +19,14 @@
 
 package net.minecraftforge.fml.network;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
+import javax.annotation.Nullable;
+
 import net.minecraftforge.fml.LogicalSide;
 import net.minecraftforge.fml.LogicalSidedProvider;
 
@@ -35,9 +38,18 @@ import net.minecraft.network.Packet;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerChunkManager;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.chunk.WorldChunk;
 import net.minecraft.world.dimension.DimensionType;
 
+import net.patchworkmc.impl.networking.PacketFanOut;
+import net.patchworkmc.impl.networking.PlayerIndexHolder;
+import net.patchworkmc.impl.networking.PlayerSpatialIndex;
+import net.patchworkmc.mixin.networking.accessor.ThreadedAnvilChunkStorageAccessor;
+
 /**
  * Means to distribute packets in various ways.
  *
@@ -114,7 +126,7 @@ public class PacketDistributor<T> {
 	 * @return A curried instance
 	 */
 	public PacketTarget with(Supplier<T> input) {
-		return new PacketTarget(functor.apply(this, input), this);
+		return new PacketTarget(functor.apply(this, input), this, singleConnection(input));
 	}
 
 	/**
@@ -125,7 +137,23 @@ public class PacketDistributor<T> {
 	 * @return A curried instance
 	 */
 	public PacketTarget noArg() {
-		return new PacketTarget(functor.apply(this, () -> null), this);
+		return new PacketTarget(functor.apply(this, () -> null), this, singleConnection(() -> null));
+	}
+
+	/**
+	 * @return The connection a target of this distributor sends to, or null when it may send to several
+	 */
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private Supplier<ClientConnection> singleConnection(Supplier<T> input) {
+		if (this == PLAYER) {
+			final Supplier<ServerPlayerEntity> player = (Supplier<ServerPlayerEntity>) input;
+			return () -> player.get().networkHandler.connection;
+		} else if (this == SERVER) {
+			return () -> MinecraftClient.getInstance().getNetworkHandler().getConnection();
+		}
+
+		return null;
 	}
 
 	// TODO: Fix Checkstyle on lambda returns
@@ -135,11 +163,23 @@ public class PacketDistributor<T> {
 	}
 
 	private Consumer<Packet<?>> playerListDimConsumer(final Supplier<DimensionType> dimensionType) {
-		return packet -> getServer().getPlayerManager().sendToDimension(packet, dimensionType.get());
+		return packet -> {
+			if (PacketFanOut.ENABLED) {
+				PacketFanOut.send(packet, getConnections(dimensionType.get()));
+			} else {
+				getServer().getPlayerManager().sendToDimension(packet, dimensionType.get());
+			}
+		};
 	}
 
 	private Consumer<Packet<?>> playerListAll(final Supplier<Void> ignored) {
-		return packet -> getServer().getPlayerManager().sendToAll(packet);
+		return packet -> {
+			if (PacketFanOut.ENABLED) {
+				PacketFanOut.send(packet, getConnections(null));
+			} else {
+				getServer().getPlayerManager().sendToAll(packet);
+			}
+		};
 	}
 
 	private Consumer<Packet<?>> clientToServer(final Supplier<Void> ignored) {
@@ -149,7 +189,29 @@ public class PacketDistributor<T> {
 	private Consumer<Packet<?>> playerListPointConsumer(final Supplier<TargetPoint> pointSupplier) {
 		return packet -> {
 			final TargetPoint point = pointSupplier.get();
-			getServer().getPlayerManager().sendToAround(point.excluded, point.x, point.y, point.z, point.radius, point.dim, packet);
+			final ServerWorld world = getServer().getWorld(point.dim);
+			final double radiusSquared = point.radius * point.radius;
+
+			// Same test as PlayerManager#sendToAround, but only for the players in the chunks around the point. The
+			// extra chunk around the area covers players that moved since they were last indexed.
+			final int minChunkX = (MathHelper.floor(point.x - point.radius) >> 4) - 1;
+			final int minChunkZ = (MathHelper.floor(point.z - point.radius) >> 4) - 1;
+			final int maxChunkX = (MathHelper.floor(point.x + point.radius) >> 4) + 1;
+			final int maxChunkZ = (MathHelper.floor(point.z + point.radius) >> 4) + 1;
+
+			for (ServerPlayerEntity player : getPlayerIndex(world.getChunkManager().threadedAnvilChunkStorage).getPlayers(minChunkX, minChunkZ, maxChunkX, maxChunkZ)) {
+				if (player == point.excluded || player.dimension != point.dim) {
+					continue;
+				}
+
+				final double dx = point.x - player.x;
+				final double dy = point.y - player.y;
+				final double dz = point.z - player.z;
+
+				if (dx * dx + dy * dy + dz * dz < radiusSquared) {
+					player.networkHandler.sendPacket(packet);
+				}
+			}
 		};
 	}
 
@@ -170,19 +232,47 @@ public class PacketDistributor<T> {
 	private Consumer<Packet<?>> trackingChunk(final Supplier<WorldChunk> worldChunk) {
 		return packet -> {
 			final WorldChunk chunk = worldChunk.get();
-			((ServerChunkManager) chunk.getWorld().getChunkManager()).threadedAnvilChunkStorage.getPlayersWatchingChunk(chunk.getPos(), false)
-				.forEach(e -> e.networkHandler.sendPacket(packet));
+			final ChunkPos pos = chunk.getPos();
+			final ThreadedAnvilChunkStorage storage = ((ServerChunkManager) chunk.getWorld().getChunkManager()).threadedAnvilChunkStorage;
+			final int watchDistance = ((ThreadedAnvilChunkStorageAccessor) storage).patchwork$getWatchDistance();
+
+			// Same test as ThreadedAnvilChunkStorage#getPlayersWatchingChunk, without visiting every player of the world
+			for (ServerPlayerEntity player : getPlayerIndex(storage).getPlayers(pos.x - watchDistance - 1, pos.z - watchDistance - 1, pos.x + watchDistance + 1, pos.z + watchDistance + 1)) {
+				if (ThreadedAnvilChunkStorageAccessor.patchwork$getChebyshevDistance(pos, player, true) <= watchDistance) {
+					player.networkHandler.sendPacket(packet);
+				}
+			}
 		};
 	}
 
 	private Consumer<Packet<?>> connectionList(final Supplier<List<ClientConnection>> connections) {
-		return packet -> connections.get().forEach(connection -> connection.send(packet));
+		return packet -> PacketFanOut.send(packet, connections.get());
 	}
 
 	private MinecraftServer getServer() {
 		return LogicalSidedProvider.INSTANCE.get(LogicalSide.SERVER);
 	}
 
+	/**
+	 * @param dimension The dimension of the players to get the connections of, or null for every player
+	 */
+	private List<ClientConnection> getConnections(DimensionType dimension) {
+		List<ServerPlayerEntity> players = getServer().getPlayerManager().getPlayerList();
+		List<ClientConnection> connections = new ArrayList<>(players.size());
+
+		for (ServerPlayerEntity player : players) {
+			if (dimension == null || player.dimension == dimension) {
+				connections.add(player.networkHandler.connection);
+			}
+		}
+
+		return connections;
+	}
+
+	private static PlayerSpatialIndex getPlayerIndex(ThreadedAnvilChunkStorage storage) {
+		return ((PlayerIndexHolder) storage).patchwork$getPlayerIndex();
+	}
+
 	// CHECKSTYLE.ON: Indentation
 	public static final class TargetPoint {
 		private final ServerPlayerEntity excluded;
@@ -233,10 +323,12 @@ public class PacketDistributor<T> {
 	public static class PacketTarget {
 		private final Consumer<Packet<?>> packetConsumer;
 		private final NetworkDirection direction;
+		private final Supplier<ClientConnection> connection;
 
-		PacketTarget(final Consumer<Packet<?>> packetConsumer, final PacketDistributor<?> distributor) {
+		PacketTarget(final Consumer<Packet<?>> packetConsumer, final PacketDistributor<?> distributor, @Nullable final Supplier<ClientConnection> connection) {
 			this.packetConsumer = packetConsumer;
 			this.direction = distributor.direction;
+			this.connection = connection;
 		}
 
 		public void send(Packet<?> packet) {
@@ -246,5 +338,16 @@ public class PacketDistributor<T> {
 		public NetworkDirection getDirection() {
 			return this.direction;
 		}
+
+		/**
+		 * Patchwork extension: the one connection this target sends to, for targets such as
+		 * {@link PacketDistributor#PLAYER} and {@link PacketDistributor#SERVER}.
+		 *
+		 * @return The connection, or null if this target may send to several connections
+		 */
+		@Nullable
+		public ClientConnection getConnection() {
+			return this.connection == null ? null : this.connection.get();
+		}
 	}
 }
@@ -19,15 +19,17 @@
 
 package net.minecraftforge.fml.network.simple;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 import javax.annotation.Nullable;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectArrayMap;
-import it.unimi.dsi.fastutil.shorts.Short2ObjectArrayMap;
+import net.minecraftforge.fml.network.NetworkDirection;
 import net.minecraftforge.fml.network.NetworkEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -37,40 +39,130 @@ import org.apache.logging.log4j.MarkerManager;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.PacketByteBuf;
 
+import net.patchworkmc.api.networking.MessageThread;
+import net.patchworkmc.impl.networking.ChannelMetrics;
+import net.patchworkmc.impl.networking.MessageBatching;
+import net.patchworkmc.impl.networking.MessageWorkers;
+import net.patchworkmc.impl.networking.PatchworkNetworking;
+import net.patchworkmc.impl.networking.TrafficCounters;
+
 public class IndexedMessageCodec {
 	private static final Logger LOGGER = LogManager.getLogger();
 	private static final Marker SIMPLENET = MarkerManager.getMarker("SIMPLENET");
-	private final Short2ObjectArrayMap<MessageHandler<?>> indices = new Short2ObjectArrayMap<>();
-	private final Object2ObjectArrayMap<Class<?>, MessageHandler<?>> types = new Object2ObjectArrayMap<>();
+	// Netty's default initial capacity for heap buffers
+	private static final int DEFAULT_SIZE_HINT = 256;
+	private static final int DISCRIMINATORS = 256;
+	// Indexed by the unsigned discriminator
+	private final MessageHandler<?>[] indices = new MessageHandler<?>[DISCRIMINATORS];
+	private final Map<Class<?>, MessageHandler<?>> types = new HashMap<>();
+	// Caches lookups in types, which must remove the entry of a type whenever its handler changes
+	private final ClassValue<MessageHandler<?>> typeCache = new ClassValue<MessageHandler<?>>() {
+		@Override
+		protected MessageHandler<?> computeValue(Class<?> type) {
+			synchronized (types) {
+				return types.get(type);
+			}
+		}
+	};
 	private final String channelName;
+	@Nullable
+	private final Identifier channel;
 
 	public IndexedMessageCodec() {
 		this.channelName = "MISSING CHANNEL";
+		this.channel = null;
 	}
 
 	IndexedMessageCodec(final Identifier channelName) {
 		this.channelName = channelName.toString();
+		this.channel = channelName;
 	}
 
-	private static <M> void tryDecode(PacketByteBuf payload, NetworkEvent.Context context, int payloadIndex, MessageHandler<M> codec) {
+	private <M> void tryDecode(PacketByteBuf payload, NetworkEvent.Context context, int payloadIndex, MessageHandler<M> codec) {
 		if (codec.decoder == null) {
 			return;
 		}
 
-		Function<PacketByteBuf, M> decoder = codec.decoder;
-		M message = decoder.apply(payload);
+		NetworkDirection direction = context.getDirection();
+
+		if (codec.thread == MessageThread.NETWORK || (direction != NetworkDirection.PLAY_TO_CLIENT && direction != NetworkDirection.PLAY_TO_SERVER)) {
+			decodeAndHandle(payload, context, payloadIndex, codec);
+			return;
+		}
+
+		// The message is ours, even though it has not been handled yet
+		context.setPacketHandled(true);
+
+		Runnable task = () -> {
+			try {
+				decodeAndHandle(payload, context, payloadIndex, codec);
+			} catch (RuntimeException e) {
+				LOGGER.error(SIMPLENET, "Failed to handle message {} on channel {}", codec.messageType.getName(), channelName, e);
+			}
+		};
+
+		if (codec.thread == MessageThread.MAIN) {
+			PatchworkNetworking.enqueueWork(context.getTaskQueue(), task);
+		} else {
+			MessageWorkers.forConnection(context.getNetworkManager()).execute(task);
+		}
+	}
+
+	private static <M> void decodeAndHandle(PacketByteBuf payload, NetworkEvent.Context context, int payloadIndex, MessageHandler<M> codec) {
+		TrafficCounters counters = codec.counters;
+		// The discriminator has already been read
+		int bytes = payload.readableBytes() + 1;
+		long start = counters == null ? 0 : System.nanoTime();
+		M message;
+
+		try {
+			message = codec.decoder.apply(payload);
+		} catch (RuntimeException e) {
+			recordError(counters);
+			throw e;
+		}
+
+		long decoded = counters == null ? 0 : System.nanoTime();
+
+		if (counters != null) {
+			counters.recordIn(bytes);
+			counters.recordDecode(decoded - start);
+		}
 
 		if (payloadIndex != Integer.MIN_VALUE && codec.getLoginIndexSetter() != null) {
 			codec.getLoginIndexSetter().accept(message, payloadIndex);
 		}
 
-		codec.messageConsumer.accept(message, () -> context);
+		try {
+			codec.messageConsumer.accept(message, () -> context);
+		} catch (RuntimeException e) {
+			recordError(counters);
+			throw e;
+		} finally {
+			if (counters != null) {
+				counters.recordHandle(System.nanoTime() - decoded);
+			}
+		}
 	}
 
 	private static <M> int tryEncode(PacketByteBuf target, M message, MessageHandler<M> codec) {
 		if (codec.encoder != null) {
-			target.writeByte(codec.index & 0xff);
-			codec.encoder.accept(message, target);
+			TrafficCounters counters = codec.counters;
+			int writerIndex = target.writerIndex();
+			long start = counters == null ? 0 : System.nanoTime();
+
+			try {
+				target.writeByte(codec.index & 0xff);
+				codec.encoder.accept(message, target);
+			} catch (RuntimeException e) {
+				recordError(counters);
+				throw e;
+			}
+
+			if (counters != null) {
+				counters.recordEncode(System.nanoTime() - start);
+				counters.recordOut(target.writerIndex() - writerIndex);
+			}
 		}
 
 		if (codec.loginIndexGetter != null) {
@@ -80,14 +172,39 @@ public class IndexedMessageCodec {
 		}
 	}
 
+	private static void recordError(@Nullable TrafficCounters counters) {
+		if (counters != null) {
+			counters.recordError();
+		}
+	}
+
+	private void recordDrop() {
+		if (ChannelMetrics.ENABLED && channel != null) {
+			ChannelMetrics.forChannel(channel).recordDrop();
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public <M> MessageHandler<M> findMessageType(final M message) {
-		return (MessageHandler<M>) types.get(message.getClass());
+		return (MessageHandler<M>) typeCache.get(message.getClass());
 	}
 
 	@SuppressWarnings("unchecked")
 	<M> MessageHandler<M> findIndex(final short index) {
-		return (MessageHandler<M>) indices.get(index);
+		return (MessageHandler<M>) indices[index & 0xff];
+	}
+
+	/**
+	 * @return The expected encoded size of the message, including the discriminator, for sizing buffers up front
+	 */
+	<M> int getSizeHint(M message) {
+		MessageHandler<M> codec = findMessageType(message);
+
+		if (codec == null || codec.sizeHint == null) {
+			return DEFAULT_SIZE_HINT;
+		}
+
+		return Math.max(1, codec.sizeHint.applyAsInt(message) + 1);
 	}
 
 	public <M> int build(M message, PacketByteBuf target) {
@@ -104,20 +221,154 @@ public class IndexedMessageCodec {
 	void consume(PacketByteBuf payload, int payloadIndex, NetworkEvent.Context context) {
 		if (payload == null) {
 			LOGGER.error(SIMPLENET, "Received empty payload on channel {}", channelName);
+			recordDrop();
 			return;
 		}
 
 		short discriminator = payload.readUnsignedByte();
-		final MessageHandler<?> messageHandler = indices.get(discriminator);
+
+		if (discriminator == MessageBatching.BATCH_DISCRIMINATOR && supportsBatching()) {
+			if (!MessageBatching.acceptsBatchesFrom(context.getNetworkManager())) {
+				LOGGER.error(SIMPLENET, "Received message batch on channel {} from a peer that does not support batching", channelName);
+				recordDrop();
+				return;
+			}
+
+			consumeBatch(payload, payloadIndex, context);
+			return;
+		}
+
+		consumeMessage(discriminator, payload, payloadIndex, context);
+	}
+
+	/**
+	 * Handles a single message, whose discriminator has already been read. Never handles a batch.
+	 */
+	private void consumeMessage(short discriminator, PacketByteBuf payload, int payloadIndex, NetworkEvent.Context context) {
+		final MessageHandler<?> messageHandler = indices[discriminator];
 
 		if (messageHandler == null) {
 			LOGGER.error(SIMPLENET, "Received invalid discriminator byte {} on channel {}", discriminator, channelName);
+			recordDrop();
+			return;
+		}
+
+		if (payload.readableBytes() > messageHandler.maxSize) {
+			LOGGER.error(SIMPLENET, "Received message {} of {} bytes on channel {}, larger than the maximum of {}", messageHandler.messageType.getName(), payload.readableBytes(), channelName, messageHandler.maxSize);
+			recordDrop();
 			return;
 		}
 
 		tryDecode(payload, context, payloadIndex, messageHandler);
 	}
 
+	/**
+	 * @return Whether the payload, or every message of a batch, is no larger than the maximum size of its message
+	 * type, without reading from it
+	 */
+	boolean isWithinSizeLimit(PacketByteBuf payload) {
+		if (!payload.isReadable()) {
+			return true;
+		}
+
+		short discriminator = payload.getUnsignedByte(payload.readerIndex());
+
+		if (discriminator == MessageBatching.BATCH_DISCRIMINATOR && supportsBatching()) {
+			return isBatchWithinSizeLimit(payload);
+		}
+
+		return isWithinSizeLimit(discriminator, payload.readableBytes() - 1);
+	}
+
+	private boolean isWithinSizeLimit(short discriminator, int size) {
+		MessageHandler<?> messageHandler = indices[discriminator];
+		return messageHandler == null || size <= messageHandler.maxSize;
+	}
+
+	/**
+	 * Checks the size of every message in a batch. A malformed batch passes here, it is rejected by
+	 * {@link #countMessages(PacketByteBuf)} instead.
+	 */
+	private boolean isBatchWithinSizeLimit(PacketByteBuf payload) {
+		PacketByteBuf batch = new PacketByteBuf(payload.duplicate());
+		batch.skipBytes(1);
+
+		try {
+			while (batch.isReadable()) {
+				int length = batch.readVarInt();
+
+				if (length < 1 || length > batch.readableBytes()) {
+					return true;
+				}
+
+				if (!isWithinSizeLimit(batch.getUnsignedByte(batch.readerIndex()), length - 1)) {
+					return false;
+				}
+
+				batch.skipBytes(length);
+			}
+		} catch (RuntimeException e) {
+			// An unterminated VarInt
+			return true;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return The number of messages in the payload, more than one only for a batch, or -1 for a truncated batch
+	 */
+	int countMessages(PacketByteBuf payload) {
+		if (!payload.isReadable() || payload.getUnsignedByte(payload.readerIndex()) != MessageBatching.BATCH_DISCRIMINATOR || !supportsBatching()) {
+			return 1;
+		}
+
+		PacketByteBuf batch = new PacketByteBuf(payload.duplicate());
+		batch.skipBytes(1);
+		int messages = 0;
+
+		try {
+			while (batch.isReadable()) {
+				int length = batch.readVarInt();
+
+				if (length < 1 || length > batch.readableBytes()) {
+					return -1;
+				}
+
+				batch.skipBytes(length);
+				messages++;
+			}
+		} catch (RuntimeException e) {
+			// An unterminated VarInt
+			return -1;
+		}
+
+		return Math.max(1, messages);
+	}
+
+	private void consumeBatch(PacketByteBuf payload, int payloadIndex, NetworkEvent.Context context) {
+		while (payload.isReadable()) {
+			int length = payload.readVarInt();
+
+			if (length < 1 || length > payload.readableBytes()) {
+				LOGGER.error(SIMPLENET, "Received truncated message batch on channel {}", channelName);
+				recordDrop();
+				return;
+			}
+
+			// Batches never nest, a batch discriminator in here is invalid like any other unknown one
+			PacketByteBuf message = new PacketByteBuf(payload.readSlice(length));
+			consumeMessage(message.readUnsignedByte(), message, payloadIndex, context);
+		}
+	}
+
+	/**
+	 * @return Whether messages of this channel may be batched, which needs the batch discriminator to be unused
+	 */
+	boolean supportsBatching() {
+		return indices[MessageBatching.BATCH_DISCRIMINATOR] == null;
+	}
+
 	<M> MessageHandler<M> addCodecIndex(int index, Class<M> messageType, BiConsumer<M, PacketByteBuf> encoder, Function<PacketByteBuf, M> decoder, BiConsumer<M, Supplier<NetworkEvent.Context>> messageConsumer) {
 		return new MessageHandler<>(index, messageType, encoder, decoder, messageConsumer);
 	}
@@ -132,6 +383,12 @@ public class IndexedMessageCodec {
 		private BiConsumer<M, Integer> loginIndexSetter;
 		@Nullable
 		private Function<M, Integer> loginIndexGetter;
+		@Nullable
+		private ToIntFunction<M> sizeHint;
+		private MessageThread thread = MessageThread.NETWORK;
+		private int maxSize = Integer.MAX_VALUE;
+		@Nullable
+		private final TrafficCounters counters;
 
 		MessageHandler(int index, Class<M> messageType, BiConsumer<M, PacketByteBuf> encoder, Function<PacketByteBuf, M> decoder, BiConsumer<M, Supplier<NetworkEvent.Context>> messageConsumer) {
 			this.index = index;
@@ -141,8 +398,13 @@ public class IndexedMessageCodec {
 			this.messageConsumer = messageConsumer;
 			this.loginIndexGetter = null;
 			this.loginIndexSetter = null;
-			indices.put((short) (index & 0xff), this);
-			types.put(messageType, this);
+			this.counters = ChannelMetrics.ENABLED && channel != null ? ChannelMetrics.forMessage(channel, index & 0xff, messageType) : null;
+			indices[index & 0xff] = this;
+
+			synchronized (types) {
+				types.put(messageType, this);
+				typeCache.remove(messageType);
+			}
 		}
 
 		@Nullable
@@ -163,6 +425,18 @@ public class IndexedMessageCodec {
 			this.loginIndexGetter = loginIndexGetter;
 		}
 
+		void setSizeHint(ToIntFunction<M> sizeHint) {
+			this.sizeHint = sizeHint;
+		}
+
+		void setThread(MessageThread thread) {
+			this.thread = thread;
+		}
+
+		void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
 		M newInstance() {
 			try {
 				return messageType.newInstance();
@@ -22,11 +22,14 @@ package net.minecraftforge.fml.network.simple;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.IntSupplier;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import net.minecraftforge.fml.network.ICustomPacket;
 import net.minecraftforge.fml.network.NetworkDirection;
@@ -41,9 +44,20 @@ import net.minecraft.network.Packet;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.PacketByteBuf;
 
+import net.patchworkmc.api.networking.MessageThread;
+import net.patchworkmc.impl.networking.BatchablePayload;
 import net.patchworkmc.impl.networking.ListenableChannel;
+import net.patchworkmc.impl.networking.MessageBatching;
+import net.patchworkmc.impl.networking.ReleasablePayload;
+import net.patchworkmc.mixin.networking.accessor.ClientConnectionAccessor;
 
 public class SimpleChannel implements ListenableChannel {
+	/**
+	 * Encode messages sent to a single remote connection into the connection's pooled direct buffers. The packet then
+	 * owns the buffer and releases it once it has been written.
+	 */
+	private static final boolean POOLED_BUFFERS = Boolean.getBoolean("patchwork.networking.pooledBuffers");
+
 	private final Identifier channelName;
 	private final IndexedMessageCodec indexedCodec;
 	private List<Function<Boolean, List<Pair<String, ?>>>> loginPackets;
@@ -59,6 +73,16 @@ public class SimpleChannel implements ListenableChannel {
 		this.indexedCodec.consume(packet.getInternalData(), packet.getIndex(), context);
 	}
 
+	@Override
+	public boolean accepts(PacketByteBuf payload) {
+		return this.indexedCodec.isWithinSizeLimit(payload);
+	}
+
+	@Override
+	public int countMessages(PacketByteBuf payload) {
+		return this.indexedCodec.countMessages(payload);
+	}
+
 	@Override
 	public void onRegistrationChange(NetworkEvent.ChannelRegistrationChangeEvent event) {
 		// No-op
@@ -70,7 +94,9 @@ public class SimpleChannel implements ListenableChannel {
 			List<Pair<String, ?>> packets = packetGenerator.apply(isLocal);
 
 			for (Pair<String, ?> pair: packets) {
-				PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer());
+				// Login payloads are gathered before they are sent, and are not tied to the channel of any connection
+				// yet, so they stay on the heap instead of a buffer that would have to be released by hand
+				PacketByteBuf buffer = new PacketByteBuf(Unpooled.buffer(this.indexedCodec.getSizeHint(pair.getRight())));
 
 				this.indexedCodec.build(pair.getRight(), buffer);
 
@@ -87,17 +113,54 @@ public class SimpleChannel implements ListenableChannel {
 		return this.indexedCodec.addCodecIndex(index, messageType, encoder, decoder, messageConsumer);
 	}
 
+	/**
+	 * Encodes a message into a heap buffer. This is used for packets that are not written exactly once to a known
+	 * connection: packets shared between several recipients, local connections and batched messages. A pooled buffer
+	 * would have to be released after the last of an unknown number of writes, possibly on other event loops, while a
+	 * heap buffer is simply left to the garbage collector.
+	 */
 	private <M> Pair<PacketByteBuf, Integer> toBuffer(M message) {
-		final PacketByteBuf bufIn = new PacketByteBuf(Unpooled.buffer());
+		final PacketByteBuf bufIn = new PacketByteBuf(Unpooled.buffer(this.indexedCodec.getSizeHint(message)));
 		int index = encodeMessage(message, bufIn);
 		return Pair.of(bufIn, index);
 	}
 
+	private <M> Pair<PacketByteBuf, Integer> toPooledBuffer(M message, ClientConnection connection) {
+		ByteBuf buffer = ((ClientConnectionAccessor) connection).patchwork$getChannel().alloc().directBuffer(this.indexedCodec.getSizeHint(message));
+
+		try {
+			final PacketByteBuf bufIn = new PacketByteBuf(buffer);
+			int index = encodeMessage(message, bufIn);
+			return Pair.of(bufIn, index);
+		} catch (RuntimeException e) {
+			buffer.release();
+			throw e;
+		}
+	}
+
+	private static boolean canUsePooledBuffer(ClientConnection connection, NetworkDirection direction) {
+		// Local connections hand the packet object itself to the other side, it is never written. Batched messages
+		// are copied into the batch, so they have no use for a buffer of their own. Closed connections never write
+		// anything again.
+		return POOLED_BUFFERS && connection.isOpen() && !connection.isLocal() && isPlay(direction) && !MessageBatching.isActive(connection);
+	}
+
+	private static boolean isPlay(NetworkDirection direction) {
+		return direction == NetworkDirection.PLAY_TO_CLIENT || direction == NetworkDirection.PLAY_TO_SERVER;
+	}
+
 	public <M> void sendToServer(M message) {
 		sendTo(message, MinecraftClient.getInstance().getNetworkHandler().getConnection(), NetworkDirection.PLAY_TO_SERVER);
 	}
 
 	public <M> void sendTo(M message, ClientConnection connection, NetworkDirection direction) {
+		if (canUsePooledBuffer(connection, direction)) {
+			ICustomPacket<Packet<?>> packet = direction.buildPacket(toPooledBuffer(message, connection), channelName);
+			((ReleasablePayload) packet).patchwork$releaseAfterWrite();
+			connection.send(packet.getThis());
+			return;
+		}
+
 		connection.send(toVanillaPacket(message, direction));
 	}
 
@@ -113,14 +176,37 @@ public class SimpleChannel implements ListenableChannel {
 	 * @param <M> The type of the message
 	 */
 	public <M> void send(PacketDistributor.PacketTarget target, M message) {
+		ClientConnection connection = target.getConnection();
+
+		// Targets with a single connection write the packet once, so it can use a pooled buffer like sendTo
+		if (connection != null && canUsePooledBuffer(connection, target.getDirection())) {
+			sendTo(message, connection, target.getDirection());
+			return;
+		}
+
 		target.send(toVanillaPacket(message, target.getDirection()));
 	}
 
 	public <M> Packet<?> toVanillaPacket(M message, NetworkDirection direction) {
-		return direction.buildPacket(toBuffer(message), channelName).getThis();
+		ICustomPacket<Packet<?>> packet = direction.buildPacket(toBuffer(message), channelName);
+
+		// Only queued when batching is enabled and the receiving side supports it, see MessageBatcher
+		if (isPlay(direction) && this.indexedCodec.supportsBatching()) {
+			((BatchablePayload) packet).patchwork$markBatchable();
+		}
+
+		return packet.getThis();
 	}
 
 	public <M> void reply(M msgToReply, NetworkEvent.Context context) {
+		NetworkDirection direction = context.getDirection().reply();
+
+		// Play replies go straight back over the connection, the same as the context's dispatcher would send them
+		if (canUsePooledBuffer(context.getNetworkManager(), direction)) {
+			sendTo(msgToReply, context.getNetworkManager(), direction);
+			return;
+		}
+
 		context.getPacketDispatcher().sendPacket(channelName, toBuffer(msgToReply).getLeft());
 	}
 
@@ -146,6 +232,9 @@ public class SimpleChannel implements ListenableChannel {
 		private Function<M, Integer> loginIndexGetter;
 		private BiConsumer<M, Integer> loginIndexSetter;
 		private Function<Boolean, List<Pair<String, M>>> loginPacketGenerators;
+		private ToIntFunction<M> sizeHint;
+		private int maxSize = Integer.MAX_VALUE;
+		private MessageThread thread = MessageThread.NETWORK;
 
 		private static <M> MessageBuilder<M> forType(final SimpleChannel channel, final Class<M> type, int id) {
 			MessageBuilder<M> builder = new MessageBuilder<>();
@@ -165,6 +254,53 @@ public class SimpleChannel implements ListenableChannel {
 			return this;
 		}
 
+		/**
+		 * Patchwork extension: an estimate of the encoded size of a message, used to size its buffer up front.
+		 *
+		 * @param sizeHint The expected number of bytes the encoder writes for a message
+		 * @return this
+		 */
+		public MessageBuilder<M> sizeHint(ToIntFunction<M> sizeHint) {
+			this.sizeHint = sizeHint;
+			return this;
+		}
+
+		/**
+		 * Patchwork extension: {@link #sizeHint(ToIntFunction)} for messages of a fixed size.
+		 */
+		public MessageBuilder<M> sizeHint(int sizeHint) {
+			return sizeHint(message -> sizeHint);
+		}
+
+		/**
+		 * Patchwork extension: the largest encoded size of a received message, excluding the discriminator. Larger
+		 * messages are discarded before being decoded, and count against the sender's inbound limits, see
+		 * {@link net.patchworkmc.api.networking.InboundLimits}.
+		 *
+		 * @param maxSize The most bytes the decoder may be handed
+		 * @return this
+		 */
+		public MessageBuilder<M> maxSize(int maxSize) {
+			if (maxSize < 0) {
+				throw new IllegalArgumentException("Negative maximum size " + maxSize);
+			}
+
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		/**
+		 * Patchwork extension: the thread this message type is decoded and handled on when received during play.
+		 * Defaults to {@link MessageThread#NETWORK}, same as Forge.
+		 *
+		 * @param thread Where to decode and handle the message
+		 * @return this
+		 */
+		public MessageBuilder<M> handleOn(MessageThread thread) {
+			this.thread = Objects.requireNonNull(thread);
+			return this;
+		}
+
 		public MessageBuilder<M> loginIndex(Function<M, Integer> loginIndexGetter, BiConsumer<M, Integer> loginIndexSetter) {
 			this.loginIndexGetter = loginIndexGetter;
 			this.loginIndexSetter = loginIndexSetter;
@@ -208,6 +344,13 @@ public class SimpleChannel implements ListenableChannel {
 		public void add() {
 			final IndexedMessageCodec.MessageHandler<M> message = this.channel.registerMessage(this.id, this.type, this.encoder, this.decoder, this.consumer);
 
+			message.setThread(this.thread);
+			message.setMaxSize(this.maxSize);
+
+			if (this.sizeHint != null) {
+				message.setSizeHint(this.sizeHint);
+			}
+
 			if (this.loginIndexSetter != null) {
 				message.setLoginIndexSetter(this.loginIndexSetter);
 			}
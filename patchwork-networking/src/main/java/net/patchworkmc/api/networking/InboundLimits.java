@@ -0,0 +1,58 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.networking;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.impl.networking.InboundLimiting;
+
+/**
+ * Rate limits for the payloads clients send on mod channels.
+ *
+ * <p>Only enabled when the server is started with {@code -Dpatchwork.networking.inboundLimits=true}. Each player then
+ * has a token bucket per channel, refilled with {@code -Dpatchwork.networking.inboundRate} payloads per second (200 by
+ * default) up to {@code -Dpatchwork.networking.inboundBurst} (400 by default), unless the channel sets its own rate with
+ * {@link #setChannelRate}. A payload batching several messages takes one token per message, and a batch needs all of
+ * them to be available at once. Payloads arriving when the bucket does not have enough tokens, or larger than the
+ * {@link net.minecraftforge.fml.network.simple.SimpleChannel.MessageBuilder#maxSize(int) maximum size} of their message
+ * type, are discarded before they are decoded, and counted as drops by {@link NetworkMetrics}. A player who sends
+ * {@code -Dpatchwork.networking.inboundViolations} (50 by default) such payloads within ten seconds is disconnected.</p>
+ *
+ * <p>The integrated server never limits its host.</p>
+ */
+public final class InboundLimits {
+	private InboundLimits() {
+	}
+
+	public static boolean isEnabled() {
+		return InboundLimiting.ENABLED;
+	}
+
+	/**
+	 * Sets the rate a single player may send payloads on a channel at.
+	 *
+	 * @param channel The channel
+	 * @param payloadsPerSecond The rate the player's bucket is refilled at
+	 * @param burst The capacity of the player's bucket
+	 */
+	public static void setChannelRate(Identifier channel, double payloadsPerSecond, int burst) {
+		InboundLimiting.setRate(channel, new InboundLimiting.Rate(payloadsPerSecond, burst));
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.networking;
+
+/**
+ * Where a {@link net.minecraftforge.fml.network.simple.SimpleChannel} message received during play is decoded and
+ * handled, set with {@link net.minecraftforge.fml.network.simple.SimpleChannel.MessageBuilder#handleOn(MessageThread)}.
+ *
+ * <p>Messages received during login are always decoded and handled on the network thread, since the handshake expects
+ * them to be handled by the time they have been received.</p>
+ */
+public enum MessageThread {
+	/**
+	 * The Netty event loop that received the message, same as Forge. Handlers that touch the game must use
+	 * {@link net.minecraftforge.fml.network.NetworkEvent.Context#enqueueWork(Runnable)}.
+	 */
+	NETWORK,
+
+	/**
+	 * A small pool of worker threads shared by every channel, for messages that are expensive to decode. Messages from
+	 * the same connection are handled in the order they were received. When the worker of a connection falls too far
+	 * behind, the connection is not read from until it has caught up.
+	 */
+	WORKER,
+
+	/**
+	 * The main thread of the logical side that received the message. The handler may touch the game directly.
+	 */
+	MAIN
+}
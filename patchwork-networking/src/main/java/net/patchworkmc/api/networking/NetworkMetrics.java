@@ -0,0 +1,199 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.networking;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.impl.networking.ChannelMetrics;
+
+/**
+ * Read access to the traffic statistics of the custom payload channels.
+ *
+ * <p>Statistics are only recorded when the game is started with {@code -Dpatchwork.networking.metrics=true}. In that
+ * case they can also be viewed with {@code /patchwork network}, and are reported to Java Flight Recorder as periodic
+ * {@code patchwork.NetworkChannel} events when the running JVM supports it.</p>
+ */
+public final class NetworkMetrics {
+	private NetworkMetrics() {
+	}
+
+	public static boolean isEnabled() {
+		return ChannelMetrics.ENABLED;
+	}
+
+	/**
+	 * @return one entry per channel, counting custom payload packets as they cross the wire
+	 */
+	public static List<Stats> getChannelStats() {
+		return isEnabled() ? ChannelMetrics.snapshotChannels() : Collections.emptyList();
+	}
+
+	/**
+	 * @return one entry per {@link net.minecraftforge.fml.network.simple.SimpleChannel} message type, counting
+	 * individual messages as they are encoded, decoded and handled
+	 */
+	public static List<Stats> getMessageStats() {
+		return isEnabled() ? ChannelMetrics.snapshotMessages() : Collections.emptyList();
+	}
+
+	public static void reset() {
+		ChannelMetrics.reset();
+	}
+
+	/**
+	 * A point in time copy of the counters of a channel or of one message type of a channel.
+	 *
+	 * <p>For channels, bytes are those of whole packets, before and after compression. For message types, bytes are
+	 * those of the encoded message including its discriminator, and compressed sizes are not known.</p>
+	 */
+	public static final class Stats {
+		private final Identifier channel;
+		private final int discriminator;
+		private final Class<?> messageType;
+		private final long messagesIn;
+		private final long messagesOut;
+		private final long bytesIn;
+		private final long bytesOut;
+		private final long compressedBytesIn;
+		private final long compressedBytesOut;
+		private final long encodeNanos;
+		private final long decodeNanos;
+		private final long handleNanos;
+		private final long drops;
+		private final long errors;
+		private final long throttled;
+		private final long shed;
+
+		public Stats(Identifier channel, int discriminator, @Nullable Class<?> messageType, long messagesIn, long messagesOut, long bytesIn, long bytesOut, long compressedBytesIn, long compressedBytesOut, long encodeNanos, long decodeNanos, long handleNanos, long drops, long errors, long throttled, long shed) {
+			this.channel = channel;
+			this.discriminator = discriminator;
+			this.messageType = messageType;
+			this.messagesIn = messagesIn;
+			this.messagesOut = messagesOut;
+			this.bytesIn = bytesIn;
+			this.bytesOut = bytesOut;
+			this.compressedBytesIn = compressedBytesIn;
+			this.compressedBytesOut = compressedBytesOut;
+			this.encodeNanos = encodeNanos;
+			this.decodeNanos = decodeNanos;
+			this.handleNanos = handleNanos;
+			this.drops = drops;
+			this.errors = errors;
+			this.throttled = throttled;
+			this.shed = shed;
+		}
+
+		public Identifier getChannel() {
+			return channel;
+		}
+
+		/**
+		 * @return the discriminator of the message type, or -1 for statistics covering a whole channel
+		 */
+		public int getDiscriminator() {
+			return discriminator;
+		}
+
+		/**
+		 * @return the message type, or null for statistics covering a whole channel
+		 */
+		@Nullable
+		public Class<?> getMessageType() {
+			return messageType;
+		}
+
+		public long getMessagesIn() {
+			return messagesIn;
+		}
+
+		public long getMessagesOut() {
+			return messagesOut;
+		}
+
+		public long getBytesIn() {
+			return bytesIn;
+		}
+
+		public long getBytesOut() {
+			return bytesOut;
+		}
+
+		public long getCompressedBytesIn() {
+			return compressedBytesIn;
+		}
+
+		public long getCompressedBytesOut() {
+			return compressedBytesOut;
+		}
+
+		public long getEncodeNanos() {
+			return encodeNanos;
+		}
+
+		public long getDecodeNanos() {
+			return decodeNanos;
+		}
+
+		public long getHandleNanos() {
+			return handleNanos;
+		}
+
+		/**
+		 * @return the number of messages that were received but thrown away without being handled
+		 */
+		public long getDrops() {
+			return drops;
+		}
+
+		/**
+		 * @return the number of messages that failed to encode, decode or handle
+		 */
+		public long getErrors() {
+			return errors;
+		}
+
+		/**
+		 * @return the number of payloads held back because the connection was not keeping up, see
+		 * {@link OutboundLimits}
+		 */
+		public long getThrottled() {
+			return throttled;
+		}
+
+		/**
+		 * @return the number of payloads discarded by an {@link OverflowPolicy} instead of being sent
+		 */
+		public long getShed() {
+			return shed;
+		}
+
+		@Override
+		public String toString() {
+			return channel + (messageType == null ? "" : " #" + discriminator + " " + messageType.getSimpleName()) + ": "
+					+ messagesIn + " in (" + bytesIn + " bytes), " + messagesOut + " out (" + bytesOut + " bytes), "
+					+ drops + " dropped, " + errors + " errors, " + throttled + " throttled, " + shed + " shed";
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.networking;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.impl.networking.OutboundLimiting;
+
+/**
+ * Budgets for the payloads sent on mod channels that wait for a slow connection.
+ *
+ * <p>Only enabled when the game is started with {@code -Dpatchwork.networking.outboundLimits=true}. Mod payloads are
+ * then held back whenever Netty reports that the connection is not writable, and sent again in order once it is. The
+ * payloads waiting for a connection are limited to {@code -Dpatchwork.networking.maxQueuedBytes} (1 MiB by default) and
+ * {@code -Dpatchwork.networking.maxQueuedMessages} (4096 by default) in total, and per channel to the limit set with
+ * {@link #setChannelLimit}. What goes once a budget is used up is decided by the channel's {@link OverflowPolicy}, and
+ * counted in the throttled and shed totals of {@link NetworkMetrics} when those are enabled.</p>
+ *
+ * <p>Vanilla packets and payloads sent with a completion listener are never held back, so mod payloads may be
+ * reordered relative to them, but never relative to each other.</p>
+ */
+public final class OutboundLimits {
+	private OutboundLimits() {
+	}
+
+	public static boolean isEnabled() {
+		return OutboundLimiting.ENABLED;
+	}
+
+	/**
+	 * Sets the budget of a channel on each connection. Channels without a limit of their own use the connection's
+	 * budget and {@link OverflowPolicy#DROP_OLDEST}.
+	 *
+	 * @param channel The channel
+	 * @param maxQueuedBytes The most payload bytes of the channel allowed to wait for a connection
+	 * @param maxQueuedMessages The most payloads of the channel allowed to wait for a connection
+	 * @param policy What to do with a payload that does not fit
+	 */
+	public static void setChannelLimit(Identifier channel, long maxQueuedBytes, int maxQueuedMessages, OverflowPolicy policy) {
+		OutboundLimiting.setLimit(channel, new OutboundLimiting.Limit(maxQueuedBytes, maxQueuedMessages, policy));
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.api.networking;
+
+/**
+ * What happens to a payload sent on a mod channel while the messages already waiting for a slow connection use up the
+ * budget of the channel or of the connection, see {@link OutboundLimits}.
+ */
+public enum OverflowPolicy {
+	/**
+	 * Discard the oldest payloads waiting on the same channel until the new one fits, or the new one if there are none.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Keep only the latest payload of each message type, replacing a waiting payload that has the same discriminator
+	 * (first byte) on the same channel, such as repeated state updates. Batches of several messages are never replaced.
+	 * Otherwise the same as {@link #DROP_OLDEST}.
+	 */
+	COALESCE_LATEST,
+
+	/**
+	 * Make the sending thread wait for the connection to catch up, for at most a second before falling back to
+	 * {@link #DROP_OLDEST}. The main thread and the network threads never wait and always fall back.
+	 */
+	BLOCK
+}
@@ -0,0 +1,38 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import net.minecraft.util.PacketByteBuf;
+
+/**
+ * Implemented on {@link net.minecraft.network.packet.s2c.play.CustomPayloadS2CPacket} and
+ * {@link net.minecraft.network.packet.c2s.play.CustomPayloadC2SPacket}, marks payloads that may be coalesced with
+ * other payloads on the same channel by {@link MessageBatcher}.
+ */
+public interface BatchablePayload {
+	void patchwork$markBatchable();
+
+	boolean patchwork$isBatchable();
+
+	/**
+	 * @return The payload itself, not a copy. Must not be modified.
+	 */
+	PacketByteBuf patchwork$getPayload();
+}
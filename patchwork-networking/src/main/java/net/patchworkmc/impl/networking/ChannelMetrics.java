@@ -0,0 +1,162 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import io.netty.channel.ChannelHandlerContext;
+import net.minecraftforge.fml.network.ICustomPacket;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.api.networking.NetworkMetrics;
+import net.patchworkmc.impl.fml.event.JfrSupport;
+
+/**
+ * Holds the counters behind {@link NetworkMetrics}.
+ *
+ * <p>Channel counters are fed by the pipeline handlers of each connection. The size of a packet after compression is
+ * only known to the handler next to the one that saw the packet itself, so it is passed between them through a
+ * thread local, as both always run on the connection's event loop, one right after the other.</p>
+ */
+public final class ChannelMetrics {
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.networking.metrics");
+	private static final int NONE = -1;
+
+	private static final ConcurrentMap<Identifier, TrafficCounters> CHANNELS = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Identifier, ConcurrentMap<Integer, TrafficCounters>> MESSAGES = new ConcurrentHashMap<>();
+	private static final ThreadLocal<TrafficCounters> COMPRESSING = new ThreadLocal<>();
+	private static final ThreadLocal<int[]> DECOMPRESSED_FROM = ThreadLocal.withInitial(() -> new int[] {NONE});
+
+	static {
+		if (ENABLED && JfrSupport.AVAILABLE) {
+			JfrNetworkChannel.register();
+		}
+	}
+
+	private ChannelMetrics() {
+	}
+
+	public static TrafficCounters forChannel(Identifier channel) {
+		return CHANNELS.computeIfAbsent(channel, name -> new TrafficCounters(name, -1, null));
+	}
+
+	public static TrafficCounters forMessage(Identifier channel, int discriminator, Class<?> messageType) {
+		return MESSAGES.computeIfAbsent(channel, name -> new ConcurrentHashMap<>())
+				.computeIfAbsent(discriminator, index -> new TrafficCounters(channel, index, messageType));
+	}
+
+	/**
+	 * Called by PacketEncoder with the serialized size of the packet.
+	 */
+	public static void onPacketEncoded(ChannelHandlerContext context, Object packet, int bytes) {
+		TrafficCounters counters = packet instanceof ICustomPacket ? forChannel(((ICustomPacket<?>) packet).getName()) : null;
+
+		if (counters != null) {
+			counters.recordOut(bytes);
+		}
+
+		if (context.pipeline().get("compress") == null) {
+			if (counters != null) {
+				counters.recordCompressedOut(bytes);
+			}
+		} else {
+			COMPRESSING.set(counters);
+		}
+	}
+
+	/**
+	 * Called by PacketDeflater with the compressed size of the packet last encoded on this thread.
+	 */
+	public static void onPacketCompressed(int bytes) {
+		TrafficCounters counters = COMPRESSING.get();
+
+		if (counters != null) {
+			counters.recordCompressedOut(bytes);
+			COMPRESSING.set(null);
+		}
+	}
+
+	/**
+	 * Called by PacketInflater with the compressed size of the packet about to be decoded on this thread.
+	 */
+	public static void onPacketDecompressing(int bytes) {
+		DECOMPRESSED_FROM.get()[0] = bytes;
+	}
+
+	/**
+	 * Called by PacketDecoder with the serialized size of the packet.
+	 */
+	public static void onPacketDecoded(ChannelHandlerContext context, Object packet, int bytes) {
+		int[] compressed = DECOMPRESSED_FROM.get();
+		int compressedBytes = compressed[0] == NONE || context.pipeline().get("decompress") == null ? bytes : compressed[0];
+		compressed[0] = NONE;
+
+		if (packet instanceof ICustomPacket) {
+			TrafficCounters counters = forChannel(((ICustomPacket<?>) packet).getName());
+			counters.recordIn(bytes);
+			counters.recordCompressedIn(compressedBytes);
+		}
+	}
+
+	/**
+	 * Called for packets written to a connection already serialized and compressed.
+	 */
+	public static void onPacketWritten(Object packet, int bytes, int compressedBytes) {
+		if (packet instanceof ICustomPacket) {
+			TrafficCounters counters = forChannel(((ICustomPacket<?>) packet).getName());
+			counters.recordOut(bytes);
+			counters.recordCompressedOut(compressedBytes);
+		}
+	}
+
+	public static List<NetworkMetrics.Stats> snapshotChannels() {
+		List<NetworkMetrics.Stats> stats = new ArrayList<>();
+
+		for (TrafficCounters channel : CHANNELS.values()) {
+			stats.add(channel.snapshot());
+		}
+
+		return stats;
+	}
+
+	public static List<NetworkMetrics.Stats> snapshotMessages() {
+		List<NetworkMetrics.Stats> stats = new ArrayList<>();
+
+		for (ConcurrentMap<Integer, TrafficCounters> channel : MESSAGES.values()) {
+			for (TrafficCounters message : channel.values()) {
+				stats.add(message.snapshot());
+			}
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Zeroes every counter in place, since message handlers keep hold of the counters they record into.
+	 */
+	public static void reset() {
+		CHANNELS.values().forEach(TrafficCounters::reset);
+		MESSAGES.values().forEach(channel -> channel.values().forEach(TrafficCounters::reset));
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraftforge.fml.network.ICustomPacket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.listener.PacketListener;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.text.LiteralText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.PacketByteBuf;
+
+/**
+ * The token buckets of the mod payloads received over a single connection, one per channel.
+ *
+ * @see net.patchworkmc.api.networking.InboundLimits
+ */
+public final class InboundLimiter {
+	private static final Logger LOGGER = LogManager.getLogger("patchwork-networking");
+	private static final double NANOS_PER_SECOND = 1_000_000_000.0D;
+
+	private final ClientConnection connection;
+	private final Map<Identifier, TokenBucket> buckets = new HashMap<>();
+	private int violations;
+	private long violationWindowStart;
+	private boolean disconnecting;
+
+	public InboundLimiter(ClientConnection connection) {
+		this.connection = connection;
+	}
+
+	synchronized boolean admit(ICustomPacket<?> packet, ListenableChannel target) {
+		if (disconnecting) {
+			return false;
+		}
+
+		if (connection.isLocal()) {
+			return true;
+		}
+
+		Identifier channel = packet.getName();
+		PacketByteBuf payload = ((BatchablePayload) packet).patchwork$getPayload();
+		long now = System.nanoTime();
+
+		if (!target.accepts(payload)) {
+			onViolation(channel, now, "oversized payload of " + payload.readableBytes() + " bytes");
+			return false;
+		}
+
+		int messages = target.countMessages(payload);
+
+		if (messages < 0) {
+			onViolation(channel, now, "malformed message batch");
+			return false;
+		}
+
+		// A batch is charged for each message it carries, not as a single payload
+		if (!buckets.computeIfAbsent(channel, name -> new TokenBucket(InboundLimiting.getRate(name), now)).tryTake(now, messages)) {
+			onViolation(channel, now, "rate limit exceeded");
+			return false;
+		}
+
+		return true;
+	}
+
+	private void onViolation(Identifier channel, long now, String reason) {
+		if (ChannelMetrics.ENABLED) {
+			ChannelMetrics.forChannel(channel).recordDrop();
+		}
+
+		if (violations == 0 || now - violationWindowStart > InboundLimiting.VIOLATION_WINDOW_NANOS) {
+			violations = 0;
+			violationWindowStart = now;
+		}
+
+		if (++violations < InboundLimiting.MAX_VIOLATIONS) {
+			return;
+		}
+
+		disconnecting = true;
+		Text message = new LiteralText("Too many invalid packets on channel " + channel);
+		PacketListener listener = connection.getPacketListener();
+
+		if (listener instanceof ServerPlayNetworkHandler) {
+			ServerPlayNetworkHandler handler = (ServerPlayNetworkHandler) listener;
+			LOGGER.warn("Disconnecting {} after {} rejected payloads on channel {} ({})", handler.player.getName().getString(), violations, channel, reason);
+			handler.disconnect(message);
+		} else {
+			LOGGER.warn("Disconnecting {} after {} rejected payloads on channel {} ({})", connection.getAddress(), violations, channel, reason);
+			connection.disconnect(message);
+		}
+	}
+
+	private static class TokenBucket {
+		private final InboundLimiting.Rate rate;
+		private double tokens;
+		private long lastRefill;
+
+		private TokenBucket(InboundLimiting.Rate rate, long now) {
+			this.rate = rate;
+			this.tokens = rate.burst;
+			this.lastRefill = now;
+		}
+
+		private boolean tryTake(long now, int count) {
+			tokens = Math.min(rate.burst, tokens + (now - lastRefill) / NANOS_PER_SECOND * rate.payloadsPerSecond);
+			lastRefill = now;
+
+			if (tokens < count) {
+				return false;
+			}
+
+			tokens -= count;
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraftforge.fml.network.ICustomPacket;
+import net.minecraftforge.fml.network.NetworkDirection;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.api.networking.InboundLimits;
+
+/**
+ * Configuration of the per connection {@link InboundLimiter}s.
+ *
+ * @see InboundLimits
+ */
+public final class InboundLimiting {
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.networking.inboundLimits");
+	static final int MAX_VIOLATIONS = Integer.getInteger("patchwork.networking.inboundViolations", 50);
+	static final long VIOLATION_WINDOW_NANOS = 10_000_000_000L;
+	private static final Rate DEFAULT_RATE = new Rate(Integer.getInteger("patchwork.networking.inboundRate", 200), Integer.getInteger("patchwork.networking.inboundBurst", 400));
+	private static final Map<Identifier, Rate> RATES = new ConcurrentHashMap<>();
+
+	private InboundLimiting() {
+		// NO-OP
+	}
+
+	public static void setRate(Identifier channel, Rate rate) {
+		RATES.put(Objects.requireNonNull(channel), rate);
+	}
+
+	static Rate getRate(Identifier channel) {
+		return RATES.getOrDefault(channel, DEFAULT_RATE);
+	}
+
+	/**
+	 * Checks a payload received from a client against its player's budget before it is decoded.
+	 *
+	 * @return Whether the payload may be handled
+	 */
+	public static boolean admit(ICustomPacket<?> packet, ListenableChannel target, ClientConnection connection) {
+		if (!ENABLED || packet.getDirection() != NetworkDirection.PLAY_TO_SERVER) {
+			return true;
+		}
+
+		InboundLimiter limiter = ((InboundLimiterHolder) connection).patchwork$getInboundLimiter();
+
+		return limiter == null || limiter.admit(packet, target);
+	}
+
+	public static final class Rate {
+		final double payloadsPerSecond;
+		final int burst;
+
+		public Rate(double payloadsPerSecond, int burst) {
+			if (!(payloadsPerSecond > 0) || burst < 1) {
+				throw new IllegalArgumentException("Invalid rate: " + payloadsPerSecond + " per second, burst of " + burst);
+			}
+
+			this.payloadsPerSecond = payloadsPerSecond;
+			this.burst = burst;
+		}
+	}
+}
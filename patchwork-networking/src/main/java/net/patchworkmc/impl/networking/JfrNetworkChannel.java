@@ -0,0 +1,127 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import net.patchworkmc.api.networking.NetworkMetrics;
+
+/**
+ * Periodic Flight Recorder event with the running totals of a channel, or of one message type of a channel.
+ */
+@Name("patchwork.NetworkChannel")
+@Label("Network Channel")
+@Category("Patchwork")
+@Period("10 s")
+@StackTrace(false)
+final class JfrNetworkChannel extends Event {
+	@Label("Channel")
+	String channel;
+
+	@Label("Discriminator")
+	int discriminator;
+
+	@Label("Message Type")
+	Class<?> messageType;
+
+	@Label("Messages In")
+	long messagesIn;
+
+	@Label("Messages Out")
+	long messagesOut;
+
+	@Label("Bytes In")
+	@DataAmount
+	long bytesIn;
+
+	@Label("Bytes Out")
+	@DataAmount
+	long bytesOut;
+
+	@Label("Compressed Bytes In")
+	@DataAmount
+	long compressedBytesIn;
+
+	@Label("Compressed Bytes Out")
+	@DataAmount
+	long compressedBytesOut;
+
+	@Label("Encode Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long encodeNanos;
+
+	@Label("Decode Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long decodeNanos;
+
+	@Label("Handle Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long handleNanos;
+
+	@Label("Drops")
+	long drops;
+
+	@Label("Errors")
+	long errors;
+
+	@Label("Throttled")
+	long throttled;
+
+	@Label("Shed")
+	long shed;
+
+	static void register() {
+		FlightRecorder.addPeriodicEvent(JfrNetworkChannel.class, JfrNetworkChannel::emit);
+	}
+
+	private static void emit() {
+		ChannelMetrics.snapshotChannels().forEach(JfrNetworkChannel::commit);
+		ChannelMetrics.snapshotMessages().forEach(JfrNetworkChannel::commit);
+	}
+
+	private static void commit(NetworkMetrics.Stats stats) {
+		JfrNetworkChannel event = new JfrNetworkChannel();
+		event.channel = stats.getChannel().toString();
+		event.discriminator = stats.getDiscriminator();
+		event.messageType = stats.getMessageType();
+		event.messagesIn = stats.getMessagesIn();
+		event.messagesOut = stats.getMessagesOut();
+		event.bytesIn = stats.getBytesIn();
+		event.bytesOut = stats.getBytesOut();
+		event.compressedBytesIn = stats.getCompressedBytesIn();
+		event.compressedBytesOut = stats.getCompressedBytesOut();
+		event.encodeNanos = stats.getEncodeNanos();
+		event.decodeNanos = stats.getDecodeNanos();
+		event.handleNanos = stats.getHandleNanos();
+		event.drops = stats.getDrops();
+		event.errors = stats.getErrors();
+		event.throttled = stats.getThrottled();
+		event.shed = stats.getShed();
+		event.commit();
+	}
+}
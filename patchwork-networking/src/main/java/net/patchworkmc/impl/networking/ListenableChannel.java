@@ -25,8 +25,24 @@ import net.minecraftforge.fml.network.ICustomPacket;
 import net.minecraftforge.fml.network.NetworkEvent;
 import net.minecraftforge.fml.network.NetworkRegistry;
 
+import net.minecraft.util.PacketByteBuf;
+
 public interface ListenableChannel {
 	void onPacket(ICustomPacket<?> packet, NetworkEvent.Context context);
 	void onRegistrationChange(NetworkEvent.ChannelRegistrationChangeEvent event);
 	void onGatherLoginPayloads(List<NetworkRegistry.LoginPayload> payloads, boolean isLocal);
+
+	/**
+	 * @return Whether the payload is within the size limit of its message type, checked without reading it
+	 */
+	default boolean accepts(PacketByteBuf payload) {
+		return true;
+	}
+
+	/**
+	 * @return The number of messages carried by the payload, or -1 if it is malformed, counted without reading it
+	 */
+	default int countMessages(PacketByteBuf payload) {
+		return 1;
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.netty.buffer.Unpooled;
+import net.minecraftforge.fml.network.ICustomPacket;
+import net.minecraftforge.fml.network.NetworkDirection;
+import org.apache.commons.lang3.tuple.Pair;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.Packet;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.PacketByteBuf;
+
+/**
+ * Queues the batchable payloads sent over a single connection until the end of the tick.
+ *
+ * @see MessageBatching
+ */
+public final class MessageBatcher {
+	// Maximum payload sizes of CustomPayloadS2CPacket and CustomPayloadC2SPacket
+	private static final int MAX_CLIENTBOUND_PAYLOAD = 1048576;
+	private static final int MAX_SERVERBOUND_PAYLOAD = 32767;
+	// A VarInt length prefix is at most 5 bytes long
+	private static final int MAX_PREFIX = 5;
+
+	private final ClientConnection connection;
+	private final Map<Identifier, PacketByteBuf> pending = new LinkedHashMap<>();
+	private NetworkDirection direction;
+
+	public MessageBatcher(ClientConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Queues the packet if it can be batched.
+	 *
+	 * @return Whether the packet was queued, or else must be sent as usual
+	 */
+	public boolean offer(Packet<?> packet) {
+		if (!(packet instanceof BatchablePayload) || !((BatchablePayload) packet).patchwork$isBatchable() || !MessageBatching.isActive(connection)) {
+			return false;
+		}
+
+		ICustomPacket<?> payload = (ICustomPacket<?>) packet;
+		Identifier channel = payload.getName();
+		PacketByteBuf data = ((BatchablePayload) packet).patchwork$getPayload();
+		int length = data.readableBytes();
+		Packet<?> full = null;
+		boolean queued;
+
+		synchronized (this) {
+			this.direction = payload.getDirection();
+
+			int limit = direction == NetworkDirection.PLAY_TO_CLIENT ? MAX_CLIENTBOUND_PAYLOAD : MAX_SERVERBOUND_PAYLOAD;
+			PacketByteBuf batch = pending.get(channel);
+
+			if (batch != null && batch.writerIndex() + MAX_PREFIX + length > limit) {
+				full = toPacket(channel, pending.remove(channel));
+				batch = null;
+			}
+
+			// Messages too large to share a payload are sent on their own, after anything queued before them
+			queued = 1 + MAX_PREFIX + length <= limit;
+
+			if (queued) {
+				if (batch == null) {
+					batch = new PacketByteBuf(Unpooled.buffer());
+					batch.writeByte(MessageBatching.BATCH_DISCRIMINATOR);
+					pending.put(channel, batch);
+				}
+
+				batch.writeVarInt(length);
+				batch.writeBytes(data, data.readerIndex(), length);
+			}
+		}
+
+		if (full != null) {
+			connection.send(full);
+		}
+
+		return queued;
+	}
+
+	/**
+	 * Sends every queued batch.
+	 */
+	public void flush() {
+		List<Packet<?>> packets;
+
+		synchronized (this) {
+			if (pending.isEmpty()) {
+				return;
+			}
+
+			packets = new ArrayList<>(pending.size());
+
+			for (Map.Entry<Identifier, PacketByteBuf> entry : pending.entrySet()) {
+				packets.add(toPacket(entry.getKey(), entry.getValue()));
+			}
+
+			pending.clear();
+		}
+
+		for (Packet<?> packet : packets) {
+			connection.send(packet);
+		}
+	}
+
+	private Packet<?> toPacket(Identifier channel, PacketByteBuf batch) {
+		return direction.buildPacket(Pair.of(batch, Integer.MIN_VALUE), channel).getThis();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.listener.PacketListener;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.util.Identifier;
+
+import net.fabricmc.fabric.api.network.ClientSidePacketRegistry;
+import net.fabricmc.fabric.api.network.ServerSidePacketRegistry;
+
+/**
+ * Coalescing of the {@link net.minecraftforge.fml.network.simple.SimpleChannel} messages sent to a connection during
+ * a tick into a single payload per channel.
+ *
+ * <p>Both sides always advertise that they can read batches by registering {@link #CHANNEL}, which the Fabric
+ * networking API announces to the remote side with the rest of the channel list. Batches are only ever sent to peers
+ * that announced it, so vanilla and Forge peers keep receiving one payload per message.</p>
+ *
+ * <p>A batch is sent on the channel of the messages it contains, as the discriminator {@link #BATCH_DISCRIMINATOR}
+ * followed by each message prefixed with its length as a VarInt. Messages keep their order within a channel, but may
+ * be reordered relative to vanilla packets and to other channels.</p>
+ */
+public final class MessageBatching {
+	/**
+	 * Batch messages to peers that support it. Reading batches is always supported.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.networking.batchMessages");
+	public static final Identifier CHANNEL = new Identifier("patchwork", "batching");
+	/**
+	 * Channels that register a message with this discriminator are never batched.
+	 */
+	public static final int BATCH_DISCRIMINATOR = 0xff;
+	private static final Logger LOGGER = LogManager.getLogger("patchwork-networking");
+	private static final NetworkChannelVersion VERSION = new NetworkChannelVersion("1", version -> true, version -> true);
+
+	private MessageBatching() {
+		// NO-OP
+	}
+
+	static void register() {
+		PatchworkNetworking.getVersionManager().createChannel(CHANNEL, VERSION);
+
+		// Nothing is ever sent on this channel, registering it only advertises support to the remote side
+		ServerSidePacketRegistry.INSTANCE.register(CHANNEL, (context, buf) -> LOGGER.warn("Received an unexpected payload on {}", CHANNEL));
+		ClientSidePacketRegistry.INSTANCE.register(CHANNEL, (context, buf) -> LOGGER.warn("Received an unexpected payload on {}", CHANNEL));
+	}
+
+	/**
+	 * @return Whether the remote side of the connection announced that it can read batches
+	 */
+	static boolean isSupportedBy(ClientConnection connection) {
+		PacketListener listener = connection.getPacketListener();
+
+		if (listener instanceof ServerPlayNetworkHandler) {
+			return ServerSidePacketRegistry.INSTANCE.canPlayerReceive(((ServerPlayNetworkHandler) listener).player, CHANNEL);
+		} else if (listener instanceof ClientPlayPacketListener) {
+			return ClientSidePacketRegistry.INSTANCE.canServerReceive(CHANNEL);
+		}
+
+		return false;
+	}
+
+	/**
+	 * Whether batches received over the connection may be read. Only peers announcing {@link #CHANNEL} ever send
+	 * batches, anything else sending one is treated as an invalid message.
+	 */
+	public static boolean acceptsBatchesFrom(ClientConnection connection) {
+		return !connection.isLocal() && isSupportedBy(connection);
+	}
+
+	/**
+	 * @return Whether messages sent over the connection right now would be batched
+	 */
+	public static boolean isActive(ClientConnection connection) {
+		return ENABLED && !connection.isLocal() && isSupportedBy(connection);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.channel.Channel;
+
+import net.minecraft.network.ClientConnection;
+
+import net.patchworkmc.mixin.networking.accessor.ClientConnectionAccessor;
+
+/**
+ * The worker threads of {@link net.patchworkmc.api.networking.MessageThread#WORKER}.
+ *
+ * <p>Each connection is pinned to one single threaded worker, which keeps its messages in order. A connection with
+ * too many messages waiting for its worker stops being read from until the worker has caught up, so that a single
+ * connection can neither grow the queue without bound nor hold up the other connections pinned to the same worker for
+ * long.</p>
+ */
+public final class MessageWorkers {
+	private static final int THREADS = Integer.getInteger("patchwork.networking.workerThreads", Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+	private static final int HIGH_WATER_MARK = 1024;
+	private static final int LOW_WATER_MARK = HIGH_WATER_MARK / 2;
+
+	private MessageWorkers() {
+		// NO-OP
+	}
+
+	public static Executor forConnection(ClientConnection connection) {
+		return ((ConnectionWorkerHolder) connection).patchwork$getConnectionWorker();
+	}
+
+	/**
+	 * The messages of a single connection waiting for its worker.
+	 */
+	public static final class ConnectionWorker implements Executor {
+		private final ClientConnection connection;
+		private final AtomicInteger pending = new AtomicInteger();
+		private boolean paused;
+
+		public ConnectionWorker(ClientConnection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public void execute(Runnable task) {
+			if (pending.incrementAndGet() >= HIGH_WATER_MARK) {
+				pause();
+			}
+
+			Executor[] workers = Holder.WORKERS;
+			workers[Math.floorMod(System.identityHashCode(connection), workers.length)].execute(() -> {
+				try {
+					task.run();
+				} finally {
+					if (pending.decrementAndGet() <= LOW_WATER_MARK) {
+						resume();
+					}
+				}
+			});
+		}
+
+		private synchronized void pause() {
+			// Messages already read are still queued, in order, only reading further ones stops
+			if (!paused && pending.get() >= HIGH_WATER_MARK) {
+				paused = true;
+				setAutoRead(false);
+			}
+		}
+
+		private synchronized void resume() {
+			if (paused && pending.get() <= LOW_WATER_MARK) {
+				paused = false;
+				setAutoRead(true);
+			}
+		}
+
+		private void setAutoRead(boolean autoRead) {
+			Channel channel = ((ClientConnectionAccessor) connection).patchwork$getChannel();
+
+			if (channel != null) {
+				channel.config().setAutoRead(autoRead);
+			}
+		}
+	}
+
+	// Only starts the threads once a message actually needs them
+	private static final class Holder {
+		private static final Executor[] WORKERS = new Executor[THREADS];
+
+		static {
+			for (int i = 0; i < THREADS; i++) {
+				String name = "Patchwork Network Worker #" + i;
+
+				// Unbounded, each connection bounds its own share by no longer reading once too far behind
+				WORKERS[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, name);
+					thread.setDaemon(true);
+					return thread;
+				});
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.mojang.brigadier.CommandDispatcher;
+
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.LiteralText;
+
+import net.patchworkmc.api.networking.NetworkMetrics;
+
+/**
+ * {@code /patchwork network [messages|reset]}, lists the channels or message types that sent the most bytes.
+ */
+final class NetworkMetricsCommand {
+	private static final int LINES = 10;
+
+	private NetworkMetricsCommand() {
+	}
+
+	static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+		dispatcher.register(CommandManager.literal("patchwork")
+				.requires(source -> source.hasPermissionLevel(2))
+				.then(CommandManager.literal("network")
+						.executes(context -> list(context.getSource(), NetworkMetrics::getChannelStats))
+						.then(CommandManager.literal("messages")
+								.executes(context -> list(context.getSource(), NetworkMetrics::getMessageStats)))
+						.then(CommandManager.literal("reset")
+								.executes(context -> {
+									NetworkMetrics.reset();
+									context.getSource().sendFeedback(new LiteralText("Network statistics reset"), true);
+									return 1;
+								}))));
+	}
+
+	private static int list(ServerCommandSource source, Supplier<List<NetworkMetrics.Stats>> stats) {
+		List<NetworkMetrics.Stats> entries = stats.get();
+		entries.sort(Comparator.comparingLong(NetworkMetrics.Stats::getBytesOut).reversed());
+
+		if (entries.isEmpty()) {
+			source.sendFeedback(new LiteralText("No network traffic recorded"), false);
+		}
+
+		for (NetworkMetrics.Stats entry : entries.subList(0, Math.min(LINES, entries.size()))) {
+			source.sendFeedback(new LiteralText(entry.toString()), false);
+		}
+
+		return entries.size();
+	}
+}
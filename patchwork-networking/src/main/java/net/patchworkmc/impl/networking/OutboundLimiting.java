@@ -0,0 +1,91 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.minecraftforge.fml.network.ICustomPacket;
+import net.minecraftforge.fml.network.NetworkDirection;
+
+import net.minecraft.network.Packet;
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.api.networking.OutboundLimits;
+import net.patchworkmc.api.networking.OverflowPolicy;
+
+/**
+ * Configuration of the per connection {@link OutboundThrottle}s.
+ *
+ * @see OutboundLimits
+ */
+public final class OutboundLimiting {
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.networking.outboundLimits");
+	static final long MAX_QUEUED_BYTES = Long.getLong("patchwork.networking.maxQueuedBytes", 1048576L);
+	static final int MAX_QUEUED_MESSAGES = Integer.getInteger("patchwork.networking.maxQueuedMessages", 4096);
+	static final long BLOCK_TIMEOUT_MILLIS = 1000L;
+	private static final Limit DEFAULT_LIMIT = new Limit(MAX_QUEUED_BYTES, MAX_QUEUED_MESSAGES, OverflowPolicy.DROP_OLDEST);
+	private static final Map<Identifier, Limit> LIMITS = new ConcurrentHashMap<>();
+
+	private OutboundLimiting() {
+		// NO-OP
+	}
+
+	public static void setLimit(Identifier channel, Limit limit) {
+		LIMITS.put(Objects.requireNonNull(channel), limit);
+	}
+
+	static Limit getLimit(Identifier channel) {
+		return LIMITS.getOrDefault(channel, DEFAULT_LIMIT);
+	}
+
+	/**
+	 * @return Whether the packet is a mod payload that may be held back
+	 */
+	static boolean appliesTo(Packet<?> packet) {
+		if (!ENABLED || !(packet instanceof ICustomPacket) || !(packet instanceof BatchablePayload)) {
+			return false;
+		}
+
+		ICustomPacket<?> payload = (ICustomPacket<?>) packet;
+		NetworkDirection direction = payload.getDirection();
+
+		// The minecraft namespace holds the vanilla channels as well as the channel registration of Fabric
+		return (direction == NetworkDirection.PLAY_TO_CLIENT || direction == NetworkDirection.PLAY_TO_SERVER)
+				&& !"minecraft".equals(payload.getName().getNamespace());
+	}
+
+	public static final class Limit {
+		final long maxQueuedBytes;
+		final int maxQueuedMessages;
+		final OverflowPolicy policy;
+
+		public Limit(long maxQueuedBytes, int maxQueuedMessages, OverflowPolicy policy) {
+			if (maxQueuedBytes < 0 || maxQueuedMessages < 0) {
+				throw new IllegalArgumentException("Negative budget: " + maxQueuedBytes + " bytes, " + maxQueuedMessages + " messages");
+			}
+
+			this.maxQueuedBytes = maxQueuedBytes;
+			this.maxQueuedMessages = maxQueuedMessages;
+			this.policy = Objects.requireNonNull(policy);
+		}
+	}
+}
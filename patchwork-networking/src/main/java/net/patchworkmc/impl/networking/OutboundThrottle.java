@@ -0,0 +1,302 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import io.netty.channel.Channel;
+import net.minecraftforge.fml.network.ICustomPacket;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.Packet;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.PacketByteBuf;
+
+import net.patchworkmc.api.networking.OverflowPolicy;
+import net.patchworkmc.mixin.networking.accessor.ClientConnectionAccessor;
+
+/**
+ * Holds back the mod payloads sent over a single connection while Netty reports it as not writable.
+ *
+ * <p>Held payloads are sent from the connection's event loop, where each write counts towards the writability of the
+ * channel right away. Sending starts at the end of every tick and stops as soon as the connection is no longer
+ * writable.</p>
+ *
+ * @see net.patchworkmc.api.networking.OutboundLimits
+ */
+public final class OutboundThrottle {
+	private static final int NO_KEY = -1;
+
+	private final ClientConnection connection;
+	private final ArrayDeque<Held> queue = new ArrayDeque<>();
+	private final Map<Identifier, Usage> usage = new HashMap<>();
+	private long queuedBytes;
+	private int queuedMessages;
+	private boolean drainScheduled;
+	private boolean closed;
+	// Set while held payloads are sent, so that they are not held again
+	private Thread draining;
+	// The thread ticking the connection, which must never wait for it
+	private volatile Thread tickThread;
+
+	public OutboundThrottle(ClientConnection connection) {
+		this.connection = connection;
+	}
+
+	/**
+	 * Holds back the packet if it is a mod payload and the connection is not keeping up.
+	 *
+	 * @return Whether the packet was taken, to be sent later or discarded, or else must be sent as usual
+	 */
+	public boolean offer(Packet<?> packet) {
+		Channel channel = ((ClientConnectionAccessor) connection).patchwork$getChannel();
+
+		if (channel == null || connection.isLocal() || !OutboundLimiting.appliesTo(packet)) {
+			return false;
+		}
+
+		Identifier name = ((ICustomPacket<?>) packet).getName();
+		PacketByteBuf data = ((BatchablePayload) packet).patchwork$getPayload();
+		int bytes = data.readableBytes();
+		int key = bytes > 0 ? data.getUnsignedByte(data.readerIndex()) : NO_KEY;
+
+		// A batch holds messages of every type, and replacing one would drop all of them
+		if (key == MessageBatching.BATCH_DISCRIMINATOR) {
+			key = NO_KEY;
+		}
+
+		synchronized (this) {
+			if (closed) {
+				shed(name, packet);
+				return true;
+			}
+
+			if (draining == Thread.currentThread() || (queue.isEmpty() && channel.isWritable())) {
+				return false;
+			}
+
+			OutboundLimiting.Limit limit = OutboundLimiting.getLimit(name);
+			Usage channelUsage = usage.computeIfAbsent(name, channelName -> new Usage());
+
+			if (limit.policy == OverflowPolicy.COALESCE_LATEST && key != NO_KEY && replace(name, key, packet, bytes, channelUsage)) {
+				return true;
+			}
+
+			if (bytes > limit.maxQueuedBytes || bytes > OutboundLimiting.MAX_QUEUED_BYTES) {
+				shed(name, packet);
+				return true;
+			}
+
+			long deadline = System.currentTimeMillis() + OutboundLimiting.BLOCK_TIMEOUT_MILLIS;
+			boolean block = limit.policy == OverflowPolicy.BLOCK && canBlock(channel);
+
+			while (!fits(limit, channelUsage, bytes)) {
+				if (block) {
+					block = await(deadline);
+				} else if (!dropOldest(name)) {
+					shed(name, packet);
+					return true;
+				}
+			}
+
+			if (closed) {
+				shed(name, packet);
+				return true;
+			}
+
+			// Waiting may have let the connection catch up
+			if (queue.isEmpty() && channel.isWritable()) {
+				return false;
+			}
+
+			queue.add(new Held(name, key, packet, bytes));
+			account(name, bytes, 1);
+		}
+
+		if (ChannelMetrics.ENABLED) {
+			ChannelMetrics.forChannel(name).recordThrottled();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Starts sending held payloads again, called at the end of every tick of the connection.
+	 */
+	public void tick() {
+		tickThread = Thread.currentThread();
+		Channel channel = ((ClientConnectionAccessor) connection).patchwork$getChannel();
+
+		synchronized (this) {
+			if (channel == null || queue.isEmpty() || drainScheduled) {
+				return;
+			}
+
+			drainScheduled = true;
+		}
+
+		channel.eventLoop().execute(this::drain);
+	}
+
+	private synchronized void drain() {
+		Channel channel = ((ClientConnectionAccessor) connection).patchwork$getChannel();
+		drainScheduled = false;
+		draining = Thread.currentThread();
+
+		try {
+			if (!connection.isOpen()) {
+				shedAll();
+				return;
+			}
+
+			while (!queue.isEmpty() && channel.isWritable()) {
+				Held held = queue.poll();
+				account(held.channel, -held.bytes, -1);
+				connection.send(held.packet);
+			}
+		} finally {
+			draining = null;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Discards every held payload, and every payload offered from now on. Called once the connection has been closed.
+	 */
+	public synchronized void shedAll() {
+		closed = true;
+
+		while (!queue.isEmpty()) {
+			Held held = queue.poll();
+			account(held.channel, -held.bytes, -1);
+			shed(held.channel, held.packet);
+		}
+
+		// Senders waiting for room find the throttle closed and shed their own payload
+		notifyAll();
+	}
+
+	private boolean canBlock(Channel channel) {
+		return Thread.currentThread() != tickThread && !channel.eventLoop().inEventLoop();
+	}
+
+	/**
+	 * @return Whether to keep waiting
+	 */
+	private boolean await(long deadline) {
+		long remaining = deadline - System.currentTimeMillis();
+
+		if (remaining <= 0) {
+			return false;
+		}
+
+		try {
+			wait(remaining);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private boolean fits(OutboundLimiting.Limit limit, Usage channelUsage, int bytes) {
+		return channelUsage.bytes + bytes <= limit.maxQueuedBytes && channelUsage.messages < limit.maxQueuedMessages
+				&& queuedBytes + bytes <= OutboundLimiting.MAX_QUEUED_BYTES && queuedMessages < OutboundLimiting.MAX_QUEUED_MESSAGES;
+	}
+
+	/**
+	 * Puts the packet in the place of a held payload of the same message type, which is discarded.
+	 */
+	private boolean replace(Identifier channel, int key, Packet<?> packet, int bytes, Usage channelUsage) {
+		for (Held held : queue) {
+			if (held.key == key && held.channel.equals(channel)) {
+				account(channel, bytes - held.bytes, 0);
+				shed(channel, held.packet);
+				held.packet = packet;
+				held.bytes = bytes;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return Whether a held payload of the channel was discarded
+	 */
+	private boolean dropOldest(Identifier channel) {
+		Iterator<Held> iterator = queue.iterator();
+
+		while (iterator.hasNext()) {
+			Held held = iterator.next();
+
+			if (held.channel.equals(channel)) {
+				iterator.remove();
+				account(channel, -held.bytes, -1);
+				shed(channel, held.packet);
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void account(Identifier channel, long bytes, int messages) {
+		Usage channelUsage = usage.get(channel);
+		channelUsage.bytes += bytes;
+		channelUsage.messages += messages;
+		queuedBytes += bytes;
+		queuedMessages += messages;
+	}
+
+	private static void shed(Identifier channel, Packet<?> packet) {
+		if (packet instanceof ReleasablePayload) {
+			((ReleasablePayload) packet).patchwork$discard();
+		}
+
+		if (ChannelMetrics.ENABLED) {
+			ChannelMetrics.forChannel(channel).recordShed();
+		}
+	}
+
+	private static class Usage {
+		private long bytes;
+		private int messages;
+	}
+
+	private static class Held {
+		private final Identifier channel;
+		private final int key;
+		private Packet<?> packet;
+		private int bytes;
+
+		private Held(Identifier channel, int key, Packet<?> packet, int bytes) {
+			this.channel = channel;
+			this.key = key;
+			this.packet = packet;
+			this.bytes = bytes;
+		}
+	}
+}
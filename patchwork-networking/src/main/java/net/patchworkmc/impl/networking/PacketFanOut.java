@@ -0,0 +1,202 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.zip.Deflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.NetworkSide;
+import net.minecraft.network.NetworkState;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketDeflater;
+import net.minecraft.util.PacketByteBuf;
+
+import net.patchworkmc.mixin.networking.accessor.ClientConnectionAccessor;
+import net.patchworkmc.mixin.networking.accessor.PacketDeflaterAccessor;
+
+/**
+ * Sends one clientbound play packet to many connections, serializing and compressing it only once.
+ *
+ * <p>The packet is encoded and compressed into a shared buffer for each compression threshold in use, the same way
+ * the "encoder" and "compress" handlers of the pipeline would. That buffer is then written to every connection from
+ * the last of those handlers, so only the length prefix and encryption still run per connection. Connections that
+ * are local, not open, not in the play state, batching the packet, or whose pipeline does not look like vanilla's get
+ * the packet through {@link ClientConnection#send(Packet)} instead.</p>
+ */
+public final class PacketFanOut {
+	public static final boolean ENABLED = Boolean.getBoolean("patchwork.networking.sharedBroadcasts");
+	private static final Logger LOGGER = LogManager.getLogger("patchwork-networking");
+	private static final int NO_COMPRESSION = -1;
+	private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(Deflater::new);
+
+	private PacketFanOut() {
+		// NO-OP
+	}
+
+	public static void send(Packet<?> packet, Collection<ClientConnection> connections) {
+		if (!ENABLED || connections.size() < 2) {
+			connections.forEach(connection -> connection.send(packet));
+			return;
+		}
+
+		ByteBuf encoded;
+
+		try {
+			encoded = encode(packet);
+		} catch (IOException | RuntimeException e) {
+			// Let each connection fail on its own, as it would have without fan-out
+			LOGGER.debug("Unable to encode {} once for all recipients", packet.getClass().getName(), e);
+			connections.forEach(connection -> connection.send(packet));
+			return;
+		}
+
+		Int2ObjectMap<ByteBuf> framed = new Int2ObjectArrayMap<>(1);
+
+		try {
+			for (ClientConnection connection : connections) {
+				ChannelHandlerContext context = getWriteContext(connection, packet);
+
+				if (context == null) {
+					connection.send(packet);
+					continue;
+				}
+
+				int threshold = getCompressionThreshold(context);
+				ByteBuf buffer = framed.get(threshold);
+
+				if (buffer == null) {
+					buffer = threshold == NO_COMPRESSION ? encoded.retainedDuplicate() : compress(encoded, threshold);
+					framed.put(threshold, buffer);
+				}
+
+				// Anything vanilla queued while the connection was not yet open has to go first
+				((ClientConnectionAccessor) connection).patchwork$sendQueuedPackets();
+				context.writeAndFlush(buffer.retainedDuplicate()).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+
+				if (ChannelMetrics.ENABLED) {
+					// This skipped the pipeline handlers that would have counted it
+					ChannelMetrics.onPacketWritten(packet, encoded.readableBytes(), buffer.readableBytes());
+				}
+			}
+		} finally {
+			encoded.release();
+			framed.values().forEach(ByteBuf::release);
+		}
+	}
+
+	/**
+	 * @return The context that the shared buffer is written from, or null if the connection must use the normal path
+	 */
+	private static ChannelHandlerContext getWriteContext(ClientConnection connection, Packet<?> packet) {
+		if (connection.isLocal() || !connection.isOpen()) {
+			return null;
+		}
+
+		if (packet instanceof BatchablePayload && ((BatchablePayload) packet).patchwork$isBatchable() && MessageBatching.isActive(connection)) {
+			return null;
+		}
+
+		// Mod payloads may have to wait behind those held back by the connection's OutboundThrottle
+		if (OutboundLimiting.appliesTo(packet)) {
+			return null;
+		}
+
+		ChannelPipeline pipeline = ((ClientConnectionAccessor) connection).patchwork$getChannel().pipeline();
+
+		if (pipeline.channel().attr(ClientConnection.ATTR_KEY_PROTOCOL).get() != NetworkState.PLAY) {
+			return null;
+		}
+
+		ChannelHandler compressor = pipeline.get("compress");
+
+		if (compressor == null) {
+			return pipeline.context("encoder");
+		} else if (compressor instanceof PacketDeflater) {
+			return pipeline.context(compressor);
+		}
+
+		return null;
+	}
+
+	private static int getCompressionThreshold(ChannelHandlerContext context) {
+		ChannelHandler handler = context.handler();
+
+		return handler instanceof PacketDeflater ? ((PacketDeflaterAccessor) handler).patchwork$getCompressionThreshold() : NO_COMPRESSION;
+	}
+
+	// Same as PacketEncoder#encode
+	private static ByteBuf encode(Packet<?> packet) throws IOException {
+		Integer id = NetworkState.PLAY.getPacketId(NetworkSide.CLIENTBOUND, packet);
+
+		if (id == null) {
+			throw new IOException("Can't serialize unregistered packet");
+		}
+
+		PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+		buf.writeVarInt(id);
+		packet.write(buf);
+
+		return buf;
+	}
+
+	// Same as PacketDeflater#encode
+	private static ByteBuf compress(ByteBuf encoded, int threshold) {
+		int length = encoded.readableBytes();
+		PacketByteBuf buf = new PacketByteBuf(ByteBufAllocator.DEFAULT.directBuffer(length + 5));
+
+		if (length < threshold) {
+			buf.writeVarInt(0);
+			buf.writeBytes(encoded, encoded.readerIndex(), length);
+			return buf;
+		}
+
+		byte[] input = new byte[length];
+		byte[] output = new byte[8192];
+		encoded.getBytes(encoded.readerIndex(), input);
+		buf.writeVarInt(length);
+
+		Deflater deflater = DEFLATER.get();
+		deflater.setInput(input, 0, length);
+		deflater.finish();
+
+		while (!deflater.finished()) {
+			int deflated = deflater.deflate(output);
+			buf.writeBytes(output, 0, deflated);
+		}
+
+		deflater.reset();
+
+		return buf;
+	}
+}
@@ -23,12 +23,24 @@ import java.util.concurrent.CompletableFuture;
 
 import net.minecraft.util.thread.ThreadExecutor;
 
+import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.registry.CommandRegistry;
+
 import net.patchworkmc.mixin.networking.accessor.ThreadExecutorAccessor;
 
-public class PatchworkNetworking {
+public class PatchworkNetworking implements ModInitializer {
 	private static MessageFactory factory;
 	private static NetworkVersionManager versionManager = new NetworkVersionManager();
 
+	@Override
+	public void onInitialize() {
+		MessageBatching.register();
+
+		if (ChannelMetrics.ENABLED) {
+			CommandRegistry.INSTANCE.register(false, NetworkMetricsCommand::register);
+		}
+	}
+
 	public static CompletableFuture<Void> enqueueWork(ThreadExecutor<?> executor, Runnable runnable) {
 		// Must check ourselves as Minecraft will sometimes delay tasks even when they are received on the client thread
 		// Same logic as ThreadTaskExecutor#runImmediately without the join
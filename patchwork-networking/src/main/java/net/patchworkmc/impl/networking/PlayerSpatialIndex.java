@@ -0,0 +1,127 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * The players of a single world, bucketed by the chunk they were in when their position was last updated.
+ *
+ * <p>Positions are refreshed whenever the chunk storage updates the player's camera position, and when the server
+ * teleports the player, which it does without waiting for the client to confirm the new position. Callers must still
+ * test the exact position of the players they get back, and should query one chunk beyond the area they need.</p>
+ */
+public final class PlayerSpatialIndex {
+	private static final long ABSENT = Long.MAX_VALUE;
+
+	private final Long2ObjectMap<List<ServerPlayerEntity>> cells = new Long2ObjectOpenHashMap<>();
+	private final Object2LongMap<ServerPlayerEntity> positions = new Object2LongOpenHashMap<>();
+
+	public PlayerSpatialIndex() {
+		positions.defaultReturnValue(ABSENT);
+	}
+
+	public synchronized void update(ServerPlayerEntity player, int chunkX, int chunkZ) {
+		long position = ChunkPos.toLong(chunkX, chunkZ);
+		long previous = positions.put(player, position);
+
+		if (previous == position) {
+			return;
+		}
+
+		if (previous != ABSENT) {
+			removeFromCell(player, previous);
+		}
+
+		cells.computeIfAbsent(position, key -> new ArrayList<>(2)).add(player);
+	}
+
+	/**
+	 * Same as {@link #update}, but ignores players that aren't in the index, such as players not added to the world yet.
+	 */
+	public synchronized void move(ServerPlayerEntity player, int chunkX, int chunkZ) {
+		if (positions.containsKey(player)) {
+			update(player, chunkX, chunkZ);
+		}
+	}
+
+	public synchronized void remove(ServerPlayerEntity player) {
+		long previous = positions.removeLong(player);
+
+		if (previous != ABSENT) {
+			removeFromCell(player, previous);
+		}
+	}
+
+	/**
+	 * @return The players last seen in the chunks between the two corners, inclusive
+	 */
+	public synchronized List<ServerPlayerEntity> getPlayers(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+		if (positions.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<ServerPlayerEntity> players = new ArrayList<>();
+		long area = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+
+		if (area > cells.size()) {
+			// Cheaper to visit the occupied chunks than every chunk of the area
+			for (Long2ObjectMap.Entry<List<ServerPlayerEntity>> entry : cells.long2ObjectEntrySet()) {
+				long position = entry.getLongKey();
+				int x = ChunkPos.getPackedX(position);
+				int z = ChunkPos.getPackedZ(position);
+
+				if (x >= minChunkX && x <= maxChunkX && z >= minChunkZ && z <= maxChunkZ) {
+					players.addAll(entry.getValue());
+				}
+			}
+		} else {
+			for (int x = minChunkX; x <= maxChunkX; x++) {
+				for (int z = minChunkZ; z <= maxChunkZ; z++) {
+					List<ServerPlayerEntity> cell = cells.get(ChunkPos.toLong(x, z));
+
+					if (cell != null) {
+						players.addAll(cell);
+					}
+				}
+			}
+		}
+
+		return players;
+	}
+
+	private void removeFromCell(ServerPlayerEntity player, long position) {
+		List<ServerPlayerEntity> cell = cells.get(position);
+
+		if (cell != null && cell.remove(player) && cell.isEmpty()) {
+			cells.remove(position);
+		}
+	}
+}
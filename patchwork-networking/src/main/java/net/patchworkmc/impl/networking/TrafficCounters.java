@@ -0,0 +1,123 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.impl.networking;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.util.Identifier;
+
+import net.patchworkmc.api.networking.NetworkMetrics;
+
+/**
+ * Traffic counters for a channel, or for one message type of a channel.
+ */
+public final class TrafficCounters {
+	private final Identifier channel;
+	private final int discriminator;
+	private final Class<?> messageType;
+	private final LongAdder messagesIn = new LongAdder();
+	private final LongAdder messagesOut = new LongAdder();
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	private final LongAdder compressedBytesIn = new LongAdder();
+	private final LongAdder compressedBytesOut = new LongAdder();
+	private final LongAdder encodeNanos = new LongAdder();
+	private final LongAdder decodeNanos = new LongAdder();
+	private final LongAdder handleNanos = new LongAdder();
+	private final LongAdder drops = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder throttled = new LongAdder();
+	private final LongAdder shed = new LongAdder();
+
+	TrafficCounters(Identifier channel, int discriminator, @Nullable Class<?> messageType) {
+		this.channel = channel;
+		this.discriminator = discriminator;
+		this.messageType = messageType;
+	}
+
+	public void recordIn(int bytes) {
+		messagesIn.increment();
+		bytesIn.add(bytes);
+	}
+
+	public void recordOut(int bytes) {
+		messagesOut.increment();
+		bytesOut.add(bytes);
+	}
+
+	public void recordCompressedIn(int bytes) {
+		compressedBytesIn.add(bytes);
+	}
+
+	public void recordCompressedOut(int bytes) {
+		compressedBytesOut.add(bytes);
+	}
+
+	public void recordEncode(long nanos) {
+		encodeNanos.add(nanos);
+	}
+
+	public void recordDecode(long nanos) {
+		decodeNanos.add(nanos);
+	}
+
+	public void recordHandle(long nanos) {
+		handleNanos.add(nanos);
+	}
+
+	public void recordDrop() {
+		drops.increment();
+	}
+
+	public void recordError() {
+		errors.increment();
+	}
+
+	public void recordThrottled() {
+		throttled.increment();
+	}
+
+	public void recordShed() {
+		shed.increment();
+	}
+
+	void reset() {
+		messagesIn.reset();
+		messagesOut.reset();
+		bytesIn.reset();
+		bytesOut.reset();
+		compressedBytesIn.reset();
+		compressedBytesOut.reset();
+		encodeNanos.reset();
+		decodeNanos.reset();
+		handleNanos.reset();
+		drops.reset();
+		errors.reset();
+		throttled.reset();
+		shed.reset();
+	}
+
+	NetworkMetrics.Stats snapshot() {
+		return new NetworkMetrics.Stats(channel, discriminator, messageType, messagesIn.sum(), messagesOut.sum(), bytesIn.sum(), bytesOut.sum(),
+				compressedBytesIn.sum(), compressedBytesOut.sum(), encodeNanos.sum(), decodeNanos.sum(), handleNanos.sum(), drops.sum(), errors.sum(), throttled.sum(), shed.sum());
+	}
+}
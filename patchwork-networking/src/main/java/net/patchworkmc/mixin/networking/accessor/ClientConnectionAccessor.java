@@ -19,9 +19,12 @@
 
 package net.patchworkmc.mixin.networking.accessor;
 
+import java.util.Queue;
+
 import io.netty.channel.Channel;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.gen.Accessor;
+import org.spongepowered.asm.mixin.gen.Invoker;
 
 import net.minecraft.network.ClientConnection;
 
@@ -29,4 +32,10 @@ import net.minecraft.network.ClientConnection;
 public interface ClientConnectionAccessor {
 	@Accessor("channel")
 	Channel patchwork$getChannel();
+
+	@Accessor("packetQueue")
+	Queue<?> patchwork$getPacketQueue();
+
+	@Invoker("sendQueuedPackets")
+	void patchwork$sendQueuedPackets();
 }
@@ -0,0 +1,123 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.mixin.networking.connection;
+
+import java.util.Iterator;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.network.ClientConnection;
+import net.minecraft.network.Packet;
+
+import net.patchworkmc.impl.networking.ConnectionWorkerHolder;
+import net.patchworkmc.impl.networking.InboundLimiter;
+import net.patchworkmc.impl.networking.InboundLimiterHolder;
+import net.patchworkmc.impl.networking.InboundLimiting;
+import net.patchworkmc.impl.networking.MessageBatcher;
+import net.patchworkmc.impl.networking.MessageBatching;
+import net.patchworkmc.impl.networking.MessageWorkers;
+import net.patchworkmc.impl.networking.OutboundLimiting;
+import net.patchworkmc.impl.networking.OutboundThrottle;
+import net.patchworkmc.impl.networking.ReleasablePayload;
+import net.patchworkmc.mixin.networking.accessor.ClientConnectionAccessor;
+import net.patchworkmc.mixin.networking.accessor.PacketWrapperAccessor;
+
+@Mixin(ClientConnection.class)
+public abstract class MixinClientConnection implements InboundLimiterHolder, ConnectionWorkerHolder {
+	@Unique
+	private final MessageBatcher batcher = MessageBatching.ENABLED ? new MessageBatcher((ClientConnection) (Object) this) : null;
+
+	@Unique
+	private final OutboundThrottle throttle = OutboundLimiting.ENABLED ? new OutboundThrottle((ClientConnection) (Object) this) : null;
+
+	@Unique
+	private final InboundLimiter inboundLimiter = InboundLimiting.ENABLED ? new InboundLimiter((ClientConnection) (Object) this) : null;
+
+	@Unique
+	private final MessageWorkers.ConnectionWorker connectionWorker = new MessageWorkers.ConnectionWorker((ClientConnection) (Object) this);
+
+	@Override
+	public InboundLimiter patchwork$getInboundLimiter() {
+		return inboundLimiter;
+	}
+
+	@Override
+	public MessageWorkers.ConnectionWorker patchwork$getConnectionWorker() {
+		return connectionWorker;
+	}
+
+	@Inject(method = "send(Lnet/minecraft/network/Packet;Lio/netty/util/concurrent/GenericFutureListener;)V", at = @At("HEAD"), cancellable = true)
+	private void patchwork$holdPayload(Packet<?> packet, GenericFutureListener<? extends Future<? super Void>> listener, CallbackInfo callback) {
+		// A closed connection queues packets forever, so a payload buffer owned by the packet would never be released
+		if (!((ClientConnection) (Object) this).isOpen() && packet instanceof ReleasablePayload && ((ReleasablePayload) packet).patchwork$discard()) {
+			callback.cancel();
+			return;
+		}
+
+		// Packets with a listener must complete on their own
+		if (listener != null) {
+			return;
+		}
+
+		if ((batcher != null && batcher.offer(packet)) || (throttle != null && throttle.offer(packet))) {
+			callback.cancel();
+		}
+	}
+
+	@Inject(method = "tick", at = @At("TAIL"))
+	private void patchwork$flushHeldPayloads(CallbackInfo callback) {
+		if (batcher != null) {
+			batcher.flush();
+		}
+
+		if (throttle != null) {
+			throttle.tick();
+		}
+	}
+
+	@Inject(method = "channelInactive", at = @At("TAIL"))
+	private void patchwork$shedHeldPayloads(ChannelHandlerContext context, CallbackInfo callback) {
+		// Nothing ticks the throttle of a closed connection again
+		if (throttle != null) {
+			throttle.shedAll();
+		}
+	}
+
+	@Inject(method = "channelInactive", at = @At("TAIL"))
+	private void patchwork$releaseQueuedPayloads(ChannelHandlerContext context, CallbackInfo callback) {
+		// Packets sent while the connection was closing are never written
+		Iterator<?> iterator = ((ClientConnectionAccessor) this).patchwork$getPacketQueue().iterator();
+
+		while (iterator.hasNext()) {
+			Packet<?> packet = ((PacketWrapperAccessor) iterator.next()).patchwork$getPacket();
+
+			if (packet instanceof ReleasablePayload && ((ReleasablePayload) packet).patchwork$discard()) {
+				iterator.remove();
+			}
+		}
+	}
+}
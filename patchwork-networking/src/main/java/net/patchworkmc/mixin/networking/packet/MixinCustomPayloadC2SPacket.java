@@ -23,19 +23,32 @@ import net.minecraftforge.fml.network.ICustomPacket;
 import net.minecraftforge.fml.network.NetworkDirection;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.network.packet.c2s.play.CustomPayloadC2SPacket;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.PacketByteBuf;
 
+import net.patchworkmc.impl.networking.BatchablePayload;
+import net.patchworkmc.impl.networking.ReleasablePayload;
+
 @Mixin(CustomPayloadC2SPacket.class)
-public class MixinCustomPayloadC2SPacket implements ICustomPacket<CustomPayloadC2SPacket> {
+public class MixinCustomPayloadC2SPacket implements ICustomPacket<CustomPayloadC2SPacket>, ReleasablePayload, BatchablePayload {
 	@Shadow
 	private PacketByteBuf data;
 
 	@Shadow
 	private Identifier channel;
 
+	@Unique
+	private boolean releaseAfterWrite;
+
+	@Unique
+	private boolean batchable;
+
 	@Override
 	public PacketByteBuf getInternalData() {
 		return new PacketByteBuf(this.data.copy());
@@ -76,4 +89,48 @@ public class MixinCustomPayloadC2SPacket implements ICustomPacket<CustomPayloadC
 	public CustomPayloadC2SPacket getThis() {
 		return (CustomPayloadC2SPacket) (Object) this;
 	}
+
+	@Override
+	public void patchwork$releaseAfterWrite() {
+		this.releaseAfterWrite = true;
+	}
+
+	@Override
+	public boolean patchwork$discard() {
+		if (!releaseAfterWrite) {
+			return false;
+		}
+
+		releaseAfterWrite = false;
+		data.release();
+		return true;
+	}
+
+	@Override
+	public void patchwork$markBatchable() {
+		this.batchable = true;
+	}
+
+	@Override
+	public boolean patchwork$isBatchable() {
+		return batchable;
+	}
+
+	@Override
+	public PacketByteBuf patchwork$getPayload() {
+		return data;
+	}
+
+	@Inject(method = "write", at = @At("HEAD"), cancellable = true)
+	private void patchwork$writeOwnedPayload(PacketByteBuf buf, CallbackInfo callback) {
+		if (releaseAfterWrite) {
+			releaseAfterWrite = false;
+
+			// Same wire format as vanilla, minus the copy of the payload
+			buf.writeIdentifier(channel);
+			buf.writeBytes(data, data.readerIndex(), data.readableBytes());
+			data.release();
+			callback.cancel();
+		}
+	}
 }
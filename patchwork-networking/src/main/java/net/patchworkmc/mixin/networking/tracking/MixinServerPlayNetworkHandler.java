@@ -0,0 +1,46 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.mixin.networking.tracking;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.math.MathHelper;
+
+import net.patchworkmc.impl.networking.PlayerIndexHolder;
+
+@Mixin(ServerPlayNetworkHandler.class)
+public abstract class MixinServerPlayNetworkHandler {
+	@Shadow
+	public ServerPlayerEntity player;
+
+	// The camera position only follows once the client confirms the teleport, until then the player is already at the
+	// new position on the server
+	@Inject(method = "requestTeleport(DDDFFLjava/util/Set;)V", at = @At("TAIL"))
+	private void patchwork$indexTeleportedPlayer(CallbackInfo callback) {
+		PlayerIndexHolder holder = (PlayerIndexHolder) player.getServerWorld().getChunkManager().threadedAnvilChunkStorage;
+		holder.patchwork$getPlayerIndex().move(player, MathHelper.floor(player.x) >> 4, MathHelper.floor(player.z) >> 4);
+	}
+}
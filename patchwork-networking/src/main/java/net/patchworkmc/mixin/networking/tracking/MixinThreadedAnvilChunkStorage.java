@@ -0,0 +1,63 @@
+/*
+ * Minecraft Forge, Patchwork Project
+ * Copyright (c) 2016-2020, 2019-2020
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation version 2.1
+ * of the License.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package net.patchworkmc.mixin.networking.tracking;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ThreadedAnvilChunkStorage;
+import net.minecraft.util.math.MathHelper;
+
+import net.patchworkmc.impl.networking.PlayerIndexHolder;
+import net.patchworkmc.impl.networking.PlayerSpatialIndex;
+
+@Mixin(ThreadedAnvilChunkStorage.class)
+public abstract class MixinThreadedAnvilChunkStorage implements PlayerIndexHolder {
+	@Unique
+	private final PlayerSpatialIndex playerIndex = new PlayerSpatialIndex();
+
+	@Override
+	public PlayerSpatialIndex patchwork$getPlayerIndex() {
+		return playerIndex;
+	}
+
+	@Inject(method = "handlePlayerAddedOrRemoved", at = @At("TAIL"))
+	private void patchwork$indexAddedOrRemovedPlayer(ServerPlayerEntity player, boolean added, CallbackInfo callback) {
+		if (added) {
+			patchwork$indexPlayer(player);
+		} else {
+			playerIndex.remove(player);
+		}
+	}
+
+	@Inject(method = "updateCameraPosition", at = @At("TAIL"))
+	private void patchwork$indexMovedPlayer(ServerPlayerEntity player, CallbackInfo callback) {
+		patchwork$indexPlayer(player);
+	}
+
+	@Unique
+	private void patchwork$indexPlayer(ServerPlayerEntity player) {
+		playerIndex.update(player, MathHelper.floor(player.x) >> 4, MathHelper.floor(player.z) >> 4);
+	}
+}
@@ -59,6 +59,7 @@ import net.minecraft.world.gen.feature.StructureFeature;
 import net.minecraft.world.gen.surfacebuilder.SurfaceBuilder;
 import net.minecraft.world.poi.PointOfInterestType;
 
+import net.patchworkmc.impl.fml.StartupTimeline;
 import net.patchworkmc.impl.registries.RegistryClassMapping;
 import net.patchworkmc.impl.registries.RegistryEventDispatcher;
 
@@ -106,6 +107,8 @@ public class ForgeRegistries {
 	// public static final IForgeRegistry DATA_SERIALIZERS = wrap(DataSerializerEntry.class);
 
 	static {
+		StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.PHASE, "ForgeRegistries initialization");
+
 		// Make sure all the registries have been setup first.
 		Bootstrap.initialize();
 
@@ -146,6 +149,8 @@ public class ForgeRegistries {
 		SURFACE_BUILDERS = wrap("surface_builder", SurfaceBuilder.class);
 		PROFESSIONS = wrap("villager_profession", VillagerProfession.class);
 		wrap("villager_type", VillagerType.class);
+
+		span.close();
 	}
 
 	@SuppressWarnings("unchecked")
@@ -31,6 +31,8 @@ import net.minecraftforge.registries.IForgeRegistry;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
 
+import net.patchworkmc.impl.fml.StartupTimeline;
+
 @SuppressWarnings("rawtypes")
 public class RegistryEventDispatcher {
 	private static final boolean CHECK_SUPERS = false;
@@ -88,7 +90,9 @@ public class RegistryEventDispatcher {
 				}
 			}
 
-			handler.accept(new RegistryEvent.Register(registry));
+			try (StartupTimeline.Span span = StartupTimeline.begin(StartupTimeline.REGISTRY, identifier.toString())) {
+				handler.accept(new RegistryEvent.Register(registry));
+			}
 		}
 	}
 }